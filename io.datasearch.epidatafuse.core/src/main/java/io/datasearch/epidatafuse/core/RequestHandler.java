@@ -1,12 +1,17 @@
 package io.datasearch.epidatafuse.core;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.datasearch.epidatafuse.core.fusionpipeline.FusionPipeLineController;
 import io.datasearch.epidatafuse.core.fusionpipeline.FusionPipeline;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.query.QueryManager;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.AttributeUtil;
+import io.datasearch.epidatafuse.core.fusionpipeline.metrics.MetricsRegistry;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregationUtil;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.FrameCatalog;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.FrameCatalogEntry;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.RecentFrameBuffer;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod.MapperUtil;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod.TemporalRelationship;
 import io.datasearch.epidatafuse.core.fusionpipeline.util.PipelineUtil;
@@ -14,7 +19,6 @@ import io.datasearch.epidatafuse.core.util.ConfigurationLoader;
 import io.datasearch.epidatafuse.core.util.FeatureConfig;
 import io.datasearch.epidatafuse.core.util.IngestConfig;
 import io.datasearch.epidatafuse.core.util.IngestionConfig;
-import io.datasearch.epidatafuse.core.util.OutputFrame;
 import io.datasearch.epidatafuse.core.util.PipelineInfo;
 import net.lingala.zip4j.ZipFile;
 import org.slf4j.Logger;
@@ -32,18 +36,22 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Http request controller.
@@ -61,6 +69,8 @@ public class RequestHandler {
     private static final String ADD_NEW_FEATURE_SUCCESS_MESSAGE = "New feature added successfully!";
     private static final String INGESTION_ERROR_MESSAGE = "Ingestion unsuccessful!";
     private static final String INGESTION_SUCCESS_MESSAGE = "Ingestion successful!";
+    private static final String FUSION_CONFIGURATION_SUCCESS_MESSAGE = "Fusion configuration updated!";
+    private static final String FUSION_CONFIGURATION_ERROR_MESSAGE = "Could not update fusion configuration";
     private static final String VARIABLE_TYPE_IDENTIFIER = "variable";
     private static final String GRANULARITY_TYPE_IDENTIFIER = "granularity";
     private static final String PIPELINE_NAMES_KEY = "pipeline_names";
@@ -79,6 +89,20 @@ public class RequestHandler {
     private static final String FUSION_FREQUENCY_MULTIPLIER_KEY = "multiplier";
     private static final String INITIAL_TIMESTAMP_KEY = "initialTimestamp";
     private static final String PARAMETERS_KEY = "parameters";
+    private static final String FROM_KEY = "from";
+    private static final String TO_KEY = "to";
+    private static final String COLUMNS_KEY = "columns";
+    private static final String SPATIAL_GRANULARITY_KEY = "spatial_granularity";
+    private static final String TEMPORAL_GRANULARITY_KEY = "temporal_granularity";
+    private static final String CURSOR_KEY = "cursor";
+    private static final String LIMIT_KEY = "limit";
+    private static final String GRANULE_KEY = "granule";
+    private static final String DTG_KEY = "dtg";
+    private static final String RECENT_FRAME_NOT_FOUND_MESSAGE = "No matching data frame in memory!";
+    private static final String INVALID_CURSOR_ERROR_MESSAGE = "Invalid cursor!";
+    private static final String INVALID_TIMESTAMP_ERROR_MESSAGE = "Invalid from or to timestamp!";
+    private static final int DEFAULT_FRAME_ROWS = 10000;
+    private static final int MAX_FRAME_ROWS = 100000;
 
     private static final Logger logger = LoggerFactory.getLogger(RequestHandler.class);
     private static ObjectMapper mapper = new ObjectMapper();
@@ -136,6 +160,34 @@ public class RequestHandler {
         }
     }
 
+    @RequestMapping(value = "/setFusionConfiguration", method = RequestMethod.POST)
+    public String setFusionConfiguration(@RequestBody Map<String, Object> payload) {
+        Response response;
+        try {
+            if (payload.get(PipelineUtil.PIPELINE_NAME_KEY) != null) {
+                String pipelineName = (String) payload.get(PipelineUtil.PIPELINE_NAME_KEY);
+                Boolean status = FusionPipeLineController.setFusionConfiguration(pipelineName, payload);
+                if (status) {
+                    response =
+                            new Response(true, false, FUSION_CONFIGURATION_SUCCESS_MESSAGE, new HashMap<>());
+                } else {
+                    response =
+                            new Response(false, true, FUSION_CONFIGURATION_ERROR_MESSAGE, new HashMap<>());
+                }
+            } else {
+                response =
+                        new Response(false, true, PIPELINE_NAME_EMPTY_ERROR_MESSAGE, new HashMap<>());
+            }
+            return mapper.writeValueAsString(response);
+        } catch (Exception e) {
+            if (e instanceof JsonProcessingException) {
+                return SERVER_ERROR_MESSAGE;
+            } else {
+                return FUSION_CONFIGURATION_ERROR_MESSAGE;
+            }
+        }
+    }
+
     @RequestMapping(value = "/addStreamingConfiguration", method = RequestMethod.POST)
     public String addStreamingConfiguration(@RequestBody Map<String, Object> payload) {
         Response response;
@@ -549,66 +601,220 @@ public class RequestHandler {
         }
     }
 
+    /**
+     * Frames of a pipeline, filtered by time range, granularity and columns and paginated by rows.
+     * Frames are streamed to the response as they are read, the next cursor resumes after the last returned row.
+     */
     @RequestMapping("/getdataframes")
-    public String getdataframes(@RequestBody Map<String, Object> payload) {
+    public ResponseEntity<StreamingResponseBody> getdataframes(@RequestBody Map<String, Object> payload) {
+        String pipelineName = (String) payload.get(PipelineUtil.PIPELINE_NAME_KEY);
+        if (pipelineName == null) {
+            return errorBody(PIPELINE_NAME_EMPTY_ERROR_MESSAGE);
+        }
+        FrameCatalog catalog = FrameCatalog.getCatalog(pipelineName);
+        List<FrameCatalogEntry> entries;
+        try {
+            entries = catalog.find((String) payload.get(FROM_KEY), (String) payload.get(TO_KEY),
+                    (String) payload.get(SPATIAL_GRANULARITY_KEY), (String) payload.get(TEMPORAL_GRANULARITY_KEY));
+        } catch (DateTimeParseException e) {
+            return errorBody(INVALID_TIMESTAMP_ERROR_MESSAGE);
+        }
+        List<String> columns = (List<String>) payload.get(COLUMNS_KEY);
+        int limit = payload.get(LIMIT_KEY) != null ?
+                Math.min(Math.max(Integer.parseInt(payload.get(LIMIT_KEY).toString()), 1), MAX_FRAME_ROWS) :
+                DEFAULT_FRAME_ROWS;
+        FrameCatalogEntry cursor = null;
+        int cursorRow = 0;
+        if (payload.get(CURSOR_KEY) != null) {
+            try {
+                //cursor holds the record timestamp, the file name and the row to resume from
+                String[] position = new String(Base64.getUrlDecoder().decode((String) payload.get(CURSOR_KEY)),
+                        StandardCharsets.UTF_8).split("\\|", -1);
+                if (position.length != 3) {
+                    return errorBody(INVALID_CURSOR_ERROR_MESSAGE);
+                }
+                cursor = new FrameCatalogEntry(position[1], null, position[0].isEmpty() ? null : position[0],
+                        null, null, 0, null, 0, 0);
+                cursorRow = Integer.parseInt(position[2]);
+            } catch (IllegalArgumentException e) {
+                return errorBody(INVALID_CURSOR_ERROR_MESSAGE);
+            }
+        }
+        FrameCatalogEntry startEntry = cursor;
+        int startEntryRow = cursorRow;
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeBooleanField("success", true);
+                generator.writeBooleanField("error", false);
+                generator.writeStringField("message", INGESTION_SUCCESS_MESSAGE);
+                generator.writeObjectFieldStart("data");
+                generator.writeArrayFieldStart("data");
+                String nextCursor = writeFrames(generator, catalog, entries, columns, startEntry, startEntryRow,
+                        limit);
+                generator.writeEndArray();
+                generator.writeStringField("nextCursor", nextCursor);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> errorBody(String message) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(outputStream ->
+                mapper.writeValue(outputStream, new Response(false, true, message, new HashMap<>())));
+    }
+
+    private String writeFrames(JsonGenerator generator, FrameCatalog catalog, List<FrameCatalogEntry> entries,
+                               List<String> columns, FrameCatalogEntry cursor, int cursorRow, int limit)
+            throws IOException {
+        int remaining = limit;
+        for (FrameCatalogEntry entry : entries) {
+            int startRow = 0;
+            if (cursor != null) {
+                int order = FrameCatalog.compare(entry, cursor);
+                if (order < 0) {
+                    continue;
+                }
+                startRow = order == 0 ? cursorRow : 0;
+            }
+            if (startRow >= entry.getRowCount()) {
+                continue;
+            }
+            if (remaining == 0) {
+                return encodeCursor(entry, startRow);
+            }
+            //spatial granule and timestamp columns are always returned
+            int[] selectedColumns = RecentFrameBuffer.selectColumns(entry.getHeaders(), 2, columns);
+            generator.writeStartObject();
+            generator.writeStringField("fileName", entry.getFileName());
+            generator.writeStringField("dtg", entry.getDtg());
+            generator.writeStringField("spatialGranularity", entry.getSpatialGranularity());
+            generator.writeStringField("temporalGranularity", entry.getTemporalGranularity());
+            generator.writeNumberField("rowCount", entry.getRowCount());
+            generator.writeArrayFieldStart("headers");
+            for (int column : selectedColumns) {
+                generator.writeString(entry.getHeaders()[column]);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("content");
+            int[] writtenRows = {0};
+            int pageRows = remaining;
+            catalog.forEachRow(entry, startRow, row -> {
+                generator.writeStartArray();
+                for (int column : selectedColumns) {
+                    generator.writeString(column < row.length ? row[column] : null);
+                }
+                generator.writeEndArray();
+                return ++writtenRows[0] < pageRows;
+            });
+            generator.writeEndArray();
+            generator.writeEndObject();
+            remaining -= writtenRows[0];
+            if (startRow + writtenRows[0] < entry.getRowCount()) {
+                return encodeCursor(entry, startRow + writtenRows[0]);
+            }
+        }
+        return null;
+    }
+
+    private static String encodeCursor(FrameCatalogEntry entry, int row) {
+        String position = (entry.getDtg() != null ? entry.getDtg() : "") + "|" + entry.getFileName() + "|" + row;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @RequestMapping("/getFrameCatalog")
+    public String getFrameCatalog(@RequestBody Map<String, Object> payload) {
         Response response;
         try {
             if (payload.get(PipelineUtil.PIPELINE_NAME_KEY) != null) {
                 String pipelineName = (String) payload.get(PipelineUtil.PIPELINE_NAME_KEY);
-                String dir = "public/output/";
-                Path rootDir = Paths.get("public", "output",
-                        pipelineName);
-                File folder = new File(rootDir.toUri());
-                File[] listOfFiles = folder.listFiles();
-                ArrayList<OutputFrame> outputData = new ArrayList<OutputFrame>();
-                for (int i = 0; i < listOfFiles.length; i++) {
-                    if (listOfFiles[i].isFile()) {
-                        File each = listOfFiles[i];
-
-                        String[] headers = null;
-                        ArrayList<String[]> content = new ArrayList<String[]>();
-
-                        try {
-                            FileReader reader = new FileReader(each);
-                            BufferedReader bufferedReader = new BufferedReader(reader);
-
-                            String line = null;
-                            headers = bufferedReader.readLine().split(",");
-
-
-                            while ((line = bufferedReader.readLine()) != null) {
-                                String[] temp = line.split(",");
-                                content.add(temp);
-                            }
-                            bufferedReader.close();
-                            reader.close();
-
-                        } catch (Exception e) {
-                            logger.info(e.getMessage());
-                        }
-                        String fileName = each.getName();
-                        OutputFrame frame = new OutputFrame(fileName, headers, content);
-                        outputData.add(frame);
-                    }
-                }
-                Map<String, Object> responseData = new HashMap<String, Object>();
-                responseData.put("data", outputData);
-                response =
-                        new Response(true, false, INGESTION_SUCCESS_MESSAGE, responseData);
+                Map<String, Object> responseData = new HashMap<>();
+                responseData.put("data", FrameCatalog.getCatalog(pipelineName).find((String) payload.get(FROM_KEY),
+                        (String) payload.get(TO_KEY), (String) payload.get(SPATIAL_GRANULARITY_KEY),
+                        (String) payload.get(TEMPORAL_GRANULARITY_KEY)));
+                response = new Response(true, false, INGESTION_SUCCESS_MESSAGE, responseData);
             } else {
                 response =
                         new Response(false, true, PIPELINE_NAME_EMPTY_ERROR_MESSAGE, new HashMap<>());
             }
             return mapper.writeValueAsString(response);
+        } catch (DateTimeParseException e) {
+            return invalidTimestamp();
         } catch (Exception e) {
-            if (e instanceof JsonProcessingException) {
-                return SERVER_ERROR_MESSAGE;
+            logger.error(e.getMessage());
+            return SERVER_ERROR_MESSAGE;
+        }
+    }
+
+    @RequestMapping("/getLatestFrame")
+    public String getLatestFrame(@RequestBody Map<String, Object> payload) {
+        return queryRecentFrames(payload, recentFrames ->
+                recentFrames.getLatestFrame((List<String>) payload.get(COLUMNS_KEY)));
+    }
+
+    @RequestMapping("/getGranuleSeries")
+    public String getGranuleSeries(@RequestBody Map<String, Object> payload) {
+        return queryRecentFrames(payload, recentFrames -> payload.get(GRANULE_KEY) != null ?
+                recentFrames.getGranuleSeries((String) payload.get(GRANULE_KEY),
+                        (List<String>) payload.get(COLUMNS_KEY), (String) payload.get(FROM_KEY),
+                        (String) payload.get(TO_KEY)) : null);
+    }
+
+    @RequestMapping("/getCrossSection")
+    public String getCrossSection(@RequestBody Map<String, Object> payload) {
+        return queryRecentFrames(payload, recentFrames ->
+                recentFrames.getCrossSection((List<String>) payload.get(COLUMNS_KEY), (String) payload.get(DTG_KEY)));
+    }
+
+    /**
+     * Run a query on the data frames a pipeline keeps in memory. Frames are never read from disk here.
+     */
+    private String queryRecentFrames(Map<String, Object> payload, Function<RecentFrameBuffer, Object> query) {
+        Response response;
+        try {
+            if (payload.get(PipelineUtil.PIPELINE_NAME_KEY) != null) {
+                String pipelineName = (String) payload.get(PipelineUtil.PIPELINE_NAME_KEY);
+                FusionPipeline pipeline = ServerContext.getPipeline(pipelineName);
+                Object result = pipeline != null ? query.apply(pipeline.getFuseEngine().getRecentFrames()) : null;
+                if (result != null) {
+                    Map<String, Object> responseData = new HashMap<>();
+                    responseData.put("data", result);
+                    response = new Response(true, false, INGESTION_SUCCESS_MESSAGE, responseData);
+                } else {
+                    response = new Response(false, true, RECENT_FRAME_NOT_FOUND_MESSAGE, new HashMap<>());
+                }
             } else {
-                return SERVER_ERROR_MESSAGE;
+                response =
+                        new Response(false, true, PIPELINE_NAME_EMPTY_ERROR_MESSAGE, new HashMap<>());
             }
+            return mapper.writeValueAsString(response);
+        } catch (DateTimeParseException e) {
+            return invalidTimestamp();
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+            return SERVER_ERROR_MESSAGE;
+        }
+    }
+
+    private static String invalidTimestamp() {
+        try {
+            return mapper.writeValueAsString(
+                    new Response(false, true, INVALID_TIMESTAMP_ERROR_MESSAGE, new HashMap<>()));
+        } catch (JsonProcessingException e) {
+            return SERVER_ERROR_MESSAGE;
         }
     }
 
+    /**
+     * Fusion run metrics of every pipeline in the Prometheus text format.
+     */
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET, produces = MetricsRegistry.CONTENT_TYPE)
+    public String metrics() {
+        return MetricsRegistry.getInstance().scrape();
+    }
+
     @RequestMapping("/testinit")
     public String testInit() {
         String message = "Successfully responded";
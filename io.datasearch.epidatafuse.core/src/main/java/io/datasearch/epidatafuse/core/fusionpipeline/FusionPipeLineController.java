@@ -112,7 +112,7 @@ public class FusionPipeLineController {
         FusionPipeline pipeline = ServerContext.getPipeline(pipelineName);
         try {
             pipeline.setFusionFrequency(
-                    TemporalRelationship.getGranularityToSeconds(granularity) *
+                    TemporalRelationship.getGranularityDuration(granularity) *
                             Integer.parseInt(multiplier));
             pipeline.setFusionFQUnit(granularity);
             pipeline.setFusionFQMultiplier(multiplier);
@@ -123,6 +123,19 @@ public class FusionPipeLineController {
         }
     }
 
+    /**
+     * Update the fusion configuration of a pipeline, values that are not given are kept.
+     */
+    public static Boolean setFusionConfiguration(String pipelineName, Map<String, Object> configurations) {
+        FusionPipeline pipeline = ServerContext.getPipeline(pipelineName);
+        try {
+            pipeline.updateFusionConfig(configurations);
+            return true;
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+            return false;
+        }
+    }
 
 //    @Deprecated
 //    public static GranularityRelationConfig buildGranularityRelationConfig(
@@ -9,6 +9,7 @@ import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationma
 import io.datasearch.epidatafuse.core.fusionpipeline.publish.Publisher;
 import io.datasearch.epidatafuse.core.fusionpipeline.stream.StreamHandler;
 import io.datasearch.epidatafuse.core.util.FeatureConfig;
+import io.datasearch.epidatafuse.core.util.FusionConfig;
 import io.datasearch.epidatafuse.core.util.IngestConfig;
 import io.datasearch.epidatafuse.core.util.IngestionConfig;
 import io.datasearch.epidatafuse.core.util.PipelineInfo;
@@ -20,6 +21,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * FusionPipeline processes streaming and historical data to generate fused data points.
@@ -41,6 +43,9 @@ public class FusionPipeline {
     private String initTimestamp;
     private String initialTimestamp;
     private static final String URL_KEY = "url";
+    private static final String BATCH_SIZE_KEY = "batch_size";
+    private static final String FLUSH_INTERVAL_KEY = "flush_interval";
+    private static final String FEATURE_ID_STRATEGY_KEY = "feature_id_strategy";
 
     public FusionPipeline(String pipelineName, DataStore dataStore,
                           Map<String, SimpleFeatureTypeSchema> featureSFTSchemas,
@@ -69,6 +74,14 @@ public class FusionPipeline {
         this.fuseEngine.setFusionFQMultiplier(fusionFQMultiplier);
     }
 
+    public void setFusionConfig(FusionConfig fusionConfig) {
+        this.fuseEngine.setFusionConfig(fusionConfig);
+    }
+
+    public void updateFusionConfig(Map<String, Object> configurations) {
+        this.fuseEngine.updateFusionConfig(configurations);
+    }
+
     public void init(String initialTimestamp) {
         this.fuseEngine.setFusionInitialTimestamp(initialTimestamp);
         this.initialTimestamp = initialTimestamp;
@@ -80,6 +93,8 @@ public class FusionPipeline {
 
     public void terminate() {
         this.streamHandler.terminateSourceConnections();
+        this.fuseEngine.shutdown();
+        this.pipelineDataStore.close();
     }
 
     public void addFeature(
@@ -98,6 +113,19 @@ public class FusionPipeline {
     public void addStreamingConfig(String featureName, Map<String, Object> parameters) {
         this.getSchema(featureName).setExternalSourceAPIURL((String) parameters.get(URL_KEY));
         this.streamHandler.addStreamingConfiguration(featureName, parameters);
+        //streamed events are written in batches of batch_size events or every flush_interval milliseconds
+        Object batchSize = parameters.get(BATCH_SIZE_KEY);
+        Object flushInterval = parameters.get(FLUSH_INTERVAL_KEY);
+        this.pipelineDataStore.configureStreamingBatch(featureName,
+                batchSize != null ? Integer.parseInt(batchSize.toString()) : 0,
+                flushInterval != null ? Long.parseLong(flushInterval.toString()) : 0);
+        //feature_id_strategy as in the ingestion config of the feature type, the default strategy if not given
+        this.pipelineDataStore.configureStreamingFeatureIds(featureName,
+                (String) parameters.get(FEATURE_ID_STRATEGY_KEY));
+    }
+
+    public String getPipelineName() {
+        return this.pipelineName;
     }
 
     public DataStore getDataStore() {
@@ -108,6 +136,10 @@ public class FusionPipeline {
         return this.pipelineDataStore.getSchema(featureTypeName);
     }
 
+    public GranularityRelationConfig getGranularityRelationConfig(String featureTypeName) {
+        return this.granularityRelationConfigs.get(featureTypeName);
+    }
+
     public FuseEngine getFuseEngine() {
         return this.fuseEngine;
     }
@@ -120,7 +152,11 @@ public class FusionPipeline {
         if (FeatureConfig.VARIABLE_TYPE_IDENTIFIER.equals(featureType)) {
             return this.pipelineDataStore.bulkIngest(ingestConfig, featureType);
         } else if (FeatureConfig.GRANULARITY_TYPE_IDENTIFIER.equals(featureType)) {
-            return this.pipelineDataStore.ingestGranules(ingestConfig);
+            Boolean status = this.pipelineDataStore.ingestGranules(ingestConfig);
+            if (status) {
+                this.fuseEngine.invalidateSpatialWeights(ingestConfig.getFeatureName());
+            }
+            return status;
         } else {
             return false;
         }
@@ -161,12 +197,24 @@ public class FusionPipeline {
         pipelineDataStore.streamingIngest(events, featureType);
     }
 
+    /**
+     * Handler of the streamed events of a feature type that were buffered but could not be written.
+     */
+    public void setStreamingWriteFailureHandler(String featureType, Predicate<Event[]> failureHandler) {
+        pipelineDataStore.setStreamingWriteFailureHandler(featureType, failureHandler);
+    }
+
     public PipelineInfo getInfo() {
-        return new PipelineInfo(this.pipelineName, this.pipelineDataStore.getSchemas(),
+        PipelineInfo pipelineInfo = new PipelineInfo(this.pipelineName, this.pipelineDataStore.getSchemas(),
                 this.pipelineDataStore.getGranularitySchemas(),
                 this.granularityRelationConfigs, this.aggregationConfigs,
                 this.fuseEngine.getFusionFrequency(), this.fuseEngine.getFusionFQUnit(),
                 this.fuseEngine.getFusionFQMultiplier(),
                 this.initTimestamp, this.initialTimestamp);
+        pipelineInfo.setSchedulerStatistics(this.fuseEngine.getScheduler().getStatistics());
+        pipelineInfo.setIngestionQueueStatistics(this.streamHandler.getIngestionQueueStatistics());
+        pipelineInfo.setRecentFrameStatistics(this.fuseEngine.getRecentFrames().getStatistics());
+        pipelineInfo.setPersistenceStatistics(this.fuseEngine.getDataFrameBuilder().getStatistics());
+        return pipelineInfo;
     }
 }
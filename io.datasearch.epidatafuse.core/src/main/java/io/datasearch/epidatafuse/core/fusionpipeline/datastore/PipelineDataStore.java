@@ -1,6 +1,7 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.datastore;
 
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion.DataIngester;
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion.FeatureIngestListener;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.SimpleFeatureTypeSchema;
 import io.datasearch.epidatafuse.core.util.IngestConfig;
 import io.datasearch.epidatafuse.core.util.IngestionConfig;
@@ -10,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * Pipeline DataStore.
@@ -36,6 +38,14 @@ public class PipelineDataStore {
         return this.dataStore;
     }
 
+    public void addIngestListener(FeatureIngestListener listener) {
+        this.dataIngester.addIngestListener(listener);
+    }
+
+    public void removeIngestListener(FeatureIngestListener listener) {
+        this.dataIngester.removeIngestListener(listener);
+    }
+
     public void addFeatureSchema(SimpleFeatureTypeSchema schema) {
         this.featureSFTSchemas.put(schema.getSimpleFeatureTypeName(), schema);
     }
@@ -97,12 +107,26 @@ public class PipelineDataStore {
         return status;
     }
 
+    /**
+     * Failures are thrown to the ingestion queue, which spills or counts the events that were not accepted.
+     */
     public void streamingIngest(Event[] events, String featureType) {
-        try {
-            this.dataIngester.ingestStreamingData(this.getDataStore(), this.getSchema(featureType), events);
-        } catch (Exception e) {
-            logger.error(e.getMessage());
-        }
+        this.dataIngester.ingestStreamingData(this.getDataStore(), this.getSchema(featureType), events);
     }
 
+    public void configureStreamingBatch(String featureType, int batchSize, long flushInterval) {
+        this.dataIngester.configureStreamingBatch(featureType, batchSize, flushInterval);
+    }
+
+    public void configureStreamingFeatureIds(String featureType, String featureIdStrategy) {
+        this.dataIngester.configureStreamingFeatureIds(featureType, featureIdStrategy);
+    }
+
+    public void setStreamingWriteFailureHandler(String featureType, Predicate<Event[]> failureHandler) {
+        this.dataIngester.setStreamingWriteFailureHandler(featureType, failureHandler);
+    }
+
+    public void close() {
+        this.dataIngester.close();
+    }
 }
@@ -0,0 +1,65 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.AttributeUtil;
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.SimpleFeatureTypeSchema;
+import org.apache.commons.csv.CSVRecord;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Mapping of CSV columns to feature attributes compiled once per ingestion.
+ */
+public class CSVColumnPlan {
+
+    private static final String ATTRIBUTE_NAME_KEY = "attribute_name";
+    private static final String ATTRIBUTE_TYPE_KEY = "attribute_type";
+    private Column[] columns;
+
+    public CSVColumnPlan(SimpleFeatureTypeSchema schema, SimpleFeatureType featureType,
+                         Map<String, Integer> transformations) {
+        List<Map<String, String>> attributes = schema.getAttributes();
+        this.columns = new Column[attributes.size()];
+        for (int i = 0; i < attributes.size(); i++) {
+            String attributeName = attributes.get(i).get(ATTRIBUTE_NAME_KEY);
+            Integer columnIndex = transformations.get(attributeName);
+            if (columnIndex == null) {
+                throw new IllegalArgumentException("No column is mapped to attribute " + attributeName);
+            }
+            int attributeIndex = featureType.indexOf(attributeName);
+            if (attributeIndex < 0) {
+                throw new IllegalArgumentException(attributeName + " is not an attribute of " +
+                        featureType.getTypeName());
+            }
+            this.columns[i] = new Column(columnIndex, attributeIndex,
+                    AttributeUtil.getConverter(attributes.get(i).get(ATTRIBUTE_TYPE_KEY)));
+        }
+    }
+
+    /**
+     * Convert the mapped columns of the record and set them on the feature.
+     */
+    public void apply(CSVRecord record, SimpleFeature feature) {
+        for (Column column : this.columns) {
+            feature.setAttribute(column.attributeIndex, column.converter.apply(record.get(column.columnIndex)));
+        }
+    }
+
+    /**
+     * A single column to attribute mapping.
+     */
+    private static class Column {
+        private final int columnIndex;
+        private final int attributeIndex;
+        private final Function<String, Object> converter;
+
+        Column(int columnIndex, int attributeIndex, Function<String, Object> converter) {
+            this.columnIndex = columnIndex;
+            this.attributeIndex = attributeIndex;
+            this.converter = converter;
+        }
+    }
+}
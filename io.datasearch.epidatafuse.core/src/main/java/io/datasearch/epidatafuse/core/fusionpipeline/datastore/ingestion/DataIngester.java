@@ -10,6 +10,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 
 /**
@@ -21,10 +23,19 @@ public class DataIngester {
     private SimpleFeatureTransformer simpleFeatureTransformer;
     private EventTransformer eventTransformer;
     private static final String SIMPLE_FEATURE_GENERATION_ERROR = "Error generating simple feature";
+    private List<FeatureIngestListener> ingestListeners = new CopyOnWriteArrayList<>();
 
     public DataIngester() {
-        this.simpleFeatureTransformer = new SimpleFeatureTransformer();
-        this.eventTransformer = new EventTransformer();
+        this.simpleFeatureTransformer = new SimpleFeatureTransformer(this.ingestListeners);
+        this.eventTransformer = new EventTransformer(this.ingestListeners);
+    }
+
+    public void addIngestListener(FeatureIngestListener listener) {
+        this.ingestListeners.add(listener);
+    }
+
+    public void removeIngestListener(FeatureIngestListener listener) {
+        this.ingestListeners.remove(listener);
     }
 
     public void ingestBulk(DataStore dataStore,
@@ -41,21 +52,21 @@ public class DataIngester {
     public Boolean ingestBulk(DataStore dataStore, IngestConfig ingestConfig,
                               SimpleFeatureTypeSchema simpleFeatureTypeSchema) {
         try {
-            int counter = writeSimpleFeatures(dataStore, simpleFeatureTypeSchema, ingestConfig);
-            logger.info("Added " + counter + " new records into " + ingestConfig.getFeatureName());
-            return true;
+            IngestionReport report = writeSimpleFeatures(dataStore, simpleFeatureTypeSchema, ingestConfig);
+            logger.info("Added " + report.getIngestedRecords() + " new records into " + ingestConfig.getFeatureName());
+            return report.isSuccessful();
         } catch (Exception e) {
             logger.error(e.getMessage());
             return false;
         }
     }
 
-    public int writeSimpleFeatures(DataStore dataStore, SimpleFeatureTypeSchema simpleFeatureTypeSchema,
-                                   IngestConfig ingestConfig) {
+    public IngestionReport writeSimpleFeatures(DataStore dataStore, SimpleFeatureTypeSchema simpleFeatureTypeSchema,
+                                               IngestConfig ingestConfig) {
         try {
-            int counter = this.simpleFeatureTransformer.transformAndWrite(dataStore,
+            IngestionReport report = this.simpleFeatureTransformer.transformAndWrite(dataStore,
                     ingestConfig, simpleFeatureTypeSchema);
-            return counter;
+            return report;
         } catch (Exception e) {
             logger.error(e.getMessage());
             throw new RuntimeException(SIMPLE_FEATURE_GENERATION_ERROR, e);
@@ -65,10 +76,25 @@ public class DataIngester {
 
     public void ingestStreamingData(DataStore dataStore,
                                     SimpleFeatureTypeSchema simpleFeatureTypeSchema, Event[] events) {
-        try {
-            this.eventTransformer.transformAndWriteEvent(events, simpleFeatureTypeSchema, dataStore);
-        } catch (Exception e) {
-            logger.error(e.getMessage());
-        }
+        this.eventTransformer.transformAndWriteEvent(events, simpleFeatureTypeSchema, dataStore);
+    }
+
+    public void configureStreamingBatch(String featureTypeName, int batchSize, long flushInterval) {
+        this.eventTransformer.configureBatching(featureTypeName, batchSize, flushInterval);
+    }
+
+    public void configureStreamingFeatureIds(String featureTypeName, String featureIdStrategy) {
+        this.eventTransformer.configureFeatureIds(featureTypeName, featureIdStrategy);
+    }
+
+    public void setStreamingWriteFailureHandler(String featureTypeName, Predicate<Event[]> failureHandler) {
+        this.eventTransformer.setWriteFailureHandler(featureTypeName, failureHandler);
+    }
+
+    /**
+     * Write buffered streaming events and close the streaming writers.
+     */
+    public void close() {
+        this.eventTransformer.close();
     }
 }
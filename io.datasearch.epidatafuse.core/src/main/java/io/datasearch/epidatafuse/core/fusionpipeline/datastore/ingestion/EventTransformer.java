@@ -1,99 +1,322 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
 
-import io.datasearch.epidatafuse.core.fusionpipeline.datastore.PipelineDataStore;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.AttributeUtil;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.SimpleFeatureTypeSchema;
 import io.siddhi.core.event.Event;
 import org.geotools.data.DataStore;
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.util.factory.Hints;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Flushable;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Transform Streaming Siddhi events to SimpleFeatures.
+ * Events are buffered per feature type and written in micro batches through a long lived writer, a batch is written
+ * once it reaches the batch size or its oldest event is older than the flush interval.
+ * Events of a batch that fails to be written are handed to the write failure handler of the feature type. Unless
+ * the handler takes them they stay buffered and are written again after the flush interval, up to
+ * MAX_RETAINED_BATCHES batches of them.
  */
 public class EventTransformer {
-    private static final Logger logger = LoggerFactory.getLogger(PipelineDataStore.class);
+    private static final Logger logger = LoggerFactory.getLogger(EventTransformer.class);
     private static final String ATTRIBUTE_NAME_KEY = "attribute_name";
     private static final String ATTRIBUTE_TYPE_KEY = "attribute_type";
-    private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
-    private MessageDigest md5;
-    //todo: use string constants, handle schema mismatch
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    private static final long FLUSH_CHECK_INTERVAL = 100;
+    private static final int MAX_RETAINED_BATCHES = 10;
+    private List<FeatureIngestListener> ingestListeners;
+    private Map<String, EventBatch> batches = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flushExecutor;
+    private boolean closed = false;
 
     public EventTransformer() {
-        try {
-            this.md5 = MessageDigest.getInstance("MD5");
-        } catch (Exception e) {
-            logger.error("MD5 could not be instantiated!");
-        }
+        this(new ArrayList<>());
+    }
+
+    public EventTransformer(List<FeatureIngestListener> ingestListeners) {
+        this.ingestListeners = ingestListeners;
+    }
+
+    /**
+     * Set the feature id strategy of a feature type, the default strategy unless one is given.
+     */
+    public void configureFeatureIds(String featureTypeName, String featureIdStrategy) {
+        EventBatch batch = this.batches.computeIfAbsent(featureTypeName, EventBatch::new);
+        batch.setFeatureIdGenerator(FeatureIdGenerator.getGenerator(featureIdStrategy));
+    }
+
+    /**
+     * Set the handler of the events of a feature type that could not be written. The handler returns true if it took
+     * the events, otherwise they stay buffered for a retry.
+     */
+    public void setWriteFailureHandler(String featureTypeName, Predicate<Event[]> failureHandler) {
+        EventBatch batch = this.batches.computeIfAbsent(featureTypeName, EventBatch::new);
+        batch.setFailureHandler(failureHandler);
+    }
+
+    /**
+     * Set the batch size and the flush interval in milliseconds of a feature type.
+     */
+    public void configureBatching(String featureTypeName, int batchSize, long flushInterval) {
+        EventBatch batch = this.batches.computeIfAbsent(featureTypeName, EventBatch::new);
+        batch.configure(batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE,
+                flushInterval > 0 ? flushInterval : DEFAULT_FLUSH_INTERVAL);
     }
 
     public void transformAndWriteEvent(Event[] events,
                                        SimpleFeatureTypeSchema simpleFeatureTypeSchema,
                                        DataStore dataStore) {
-        try {
-            FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
-                    dataStore.getFeatureWriterAppend(simpleFeatureTypeSchema.getSimpleFeatureTypeName(),
-                            Transaction.AUTO_COMMIT);
-
-            List<Map<String, String>> attributes = simpleFeatureTypeSchema.getAttributes();
-            List<Map<String, String>> records = getMappedRecords(events, attributes);
-            for (Map<String, String> record : records) {
-                SimpleFeature next = writer.next();
-                next.getUserData().put(Hints.PROVIDED_FID, generateFeatureID(record.toString()));
-                for (Map<String, String> attribute : simpleFeatureTypeSchema.getAttributes()) {
-                    String attributeName = attribute.get(ATTRIBUTE_NAME_KEY);
-                    String attributeType = attribute.get(ATTRIBUTE_TYPE_KEY);
-                    String attributeValue = record.get(attributeName);
-                    Object value = AttributeUtil.convert(attributeValue, attributeType);
-                    next.setAttribute(attribute.get(ATTRIBUTE_NAME_KEY), value);
+        this.startFlushExecutor();
+        EventBatch batch = this.batches.computeIfAbsent(simpleFeatureTypeSchema.getSimpleFeatureTypeName(),
+                EventBatch::new);
+        batch.add(events, simpleFeatureTypeSchema, dataStore);
+    }
+
+    /**
+     * Write all buffered events.
+     */
+    public void flush() {
+        this.batches.values().forEach(EventBatch::flush);
+    }
+
+    /**
+     * Write all buffered events and close the writers.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        if (this.flushExecutor != null) {
+            this.flushExecutor.shutdown();
+            this.flushExecutor = null;
+        }
+        this.batches.values().forEach(EventBatch::close);
+    }
+
+    private synchronized void startFlushExecutor() {
+        if (this.flushExecutor == null && !this.closed) {
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "stream-batch-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushExecutor.scheduleWithFixedDelay(() -> {
+                long now = System.currentTimeMillis();
+                this.batches.values().forEach(batch -> batch.flushIfDue(now));
+            }, FLUSH_CHECK_INTERVAL, FLUSH_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Buffered events of a feature type and the writer they are written through.
+     * Feature writers are not thread safe, every access is synchronized on the batch.
+     */
+    private class EventBatch {
+        private final String featureTypeName;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+        private FeatureIdGenerator featureIdGenerator = FeatureIdGenerator.getGenerator(null);
+        private Predicate<Event[]> failureHandler;
+        private List<Event> pending = new ArrayList<>();
+        private long oldestPendingTime;
+        //no flush is attempted before this time after a failed write
+        private long nextAttemptTime;
+        private SimpleFeatureTypeSchema schema;
+        private DataStore dataStore;
+        private FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+        private int[] attributeIndexes;
+        private List<String> attributeNames;
+        private Function<String, Object>[] converters;
+        private boolean[] temporal;
+
+        EventBatch(String featureTypeName) {
+            this.featureTypeName = featureTypeName;
+        }
+
+        synchronized void configure(int batchSize, long flushInterval) {
+            this.batchSize = batchSize;
+            this.flushInterval = flushInterval;
+        }
+
+        synchronized void setFeatureIdGenerator(FeatureIdGenerator featureIdGenerator) {
+            this.featureIdGenerator = featureIdGenerator;
+        }
+
+        synchronized void setFailureHandler(Predicate<Event[]> failureHandler) {
+            this.failureHandler = failureHandler;
+        }
+
+        synchronized void add(Event[] events, SimpleFeatureTypeSchema schema, DataStore dataStore) {
+            if (schema != this.schema || dataStore != this.dataStore) {
+                //the schema changed, pending events were buffered against the previous one
+                if (!this.flush()) {
+                    this.drop(this.pending.size());
                 }
-                writer.write();
-                logger.info("Added new record," + next.getID() + " to " +
-                        simpleFeatureTypeSchema.getSimpleFeatureTypeName());
+                this.closeWriter();
+                this.schema = schema;
+                this.dataStore = dataStore;
+            }
+            int attributeCount = schema.getAttributes().size();
+            for (Event event : events) {
+                if (event.getData().length == attributeCount) {
+                    if (this.pending.isEmpty()) {
+                        this.oldestPendingTime = System.currentTimeMillis();
+                    }
+                    this.pending.add(event);
+                } else {
+                    logger.error("Event dropped: Schema and input mismatch");
+                }
+            }
+            if (this.pending.size() >= this.batchSize && System.currentTimeMillis() >= this.nextAttemptTime &&
+                    !this.flush() && this.failureHandler == null) {
+                //the events stay buffered, the caller only learns that they are not written yet
+                throw new IllegalStateException(this.featureTypeName + ": " + this.pending.size() +
+                        " buffered events could not be written");
+            }
+        }
+
+        synchronized void flushIfDue(long now) {
+            if (!this.pending.isEmpty() && now - this.oldestPendingTime >= this.flushInterval &&
+                    now >= this.nextAttemptTime) {
+                this.flush();
             }
-        } catch (IOException e) {
-            logger.error("Event transformation error");
         }
-    }
 
-    public List<Map<String, String>> getMappedRecords(Event[] events,
-                                                      List<Map<String, String>> attributes) {
-        List<Map<String, String>> records = new ArrayList<>();
-        for (Event event : events) {
-            int index = 0;    //modify to get the source config
-            if (attributes.size() == event.getData().length) {
-                Map<String, String> record = new HashMap<>();
-                for (Map<String, String> attribute : attributes) {
-                    record.put(attribute.get(ATTRIBUTE_NAME_KEY), (String) event.getData(index));
-                    index++;
+        /**
+         * Write the buffered events, returns false if they could not be written. Unwritten events not taken by the
+         * failure handler stay buffered.
+         */
+        synchronized boolean flush() {
+            if (this.pending.isEmpty()) {
+                return true;
+            }
+            int written = 0;
+            //written features are announced to the ingest listeners once they are flushed
+            List<SimpleFeature> unflushed = new ArrayList<>();
+            try {
+                this.openWriter();
+                for (Event event : this.pending) {
+                    Object[] data = event.getData();
+                    String[] values = new String[data.length];
+                    SimpleFeature next = this.writer.next();
+                    for (int i = 0; i < data.length; i++) {
+                        Object value = data[i];
+                        if (value instanceof String) {
+                            values[i] = (String) value;
+                            value = this.converters[i].apply(values[i]);
+                        } else if (value != null) {
+                            //typed stream attributes are set as they are, dates may come as epoch milliseconds
+                            values[i] = value.toString();
+                            if (this.temporal[i] && value instanceof Number) {
+                                value = new Date(((Number) value).longValue());
+                            }
+                        }
+                        next.setAttribute(this.attributeIndexes[i], value);
+                    }
+                    next.getUserData().put(Hints.PROVIDED_FID, this.featureIdGenerator.generateFeatureID(
+                            SourceRecord.ofEvent(this.attributeNames, values), next));
+                    this.writer.write();
+                    written++;
+                    if (!ingestListeners.isEmpty()) {
+                        unflushed.add(SimpleFeatureBuilder.copy(next));
+                    }
+                }
+                if (this.writer instanceof Flushable) {
+                    ((Flushable) this.writer).flush();
+                }
+                for (SimpleFeature feature : unflushed) {
+                    for (FeatureIngestListener listener : ingestListeners) {
+                        listener.onFeatureIngested(this.featureTypeName, feature);
+                    }
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Added " + written + " records to " + this.featureTypeName);
                 }
-                records.add(record);
-            } else {
-                logger.error("Event dropped: Schema and input mismatch");
+                this.pending.clear();
+                this.nextAttemptTime = 0;
+                return true;
+            } catch (Exception e) {
+                //rows passed to the writer are not flushed either, none of the batch is known to be written
+                logger.error(this.featureTypeName + ": " + this.pending.size() + " events were not written, " +
+                        e.getMessage());
+                //the writer may be left in an inconsistent state, the next batch opens a new one
+                this.closeWriter();
+                if (this.failureHandler != null && this.failureHandler.test(this.pending.toArray(new Event[0]))) {
+                    this.pending.clear();
+                    return false;
+                }
+                this.nextAttemptTime = System.currentTimeMillis() + this.flushInterval;
+                int limit = this.batchSize * MAX_RETAINED_BATCHES;
+                if (this.pending.size() > limit) {
+                    this.drop(this.pending.size() - limit);
+                }
+                return false;
             }
         }
-        return records;
-    }
 
-    public String generateFeatureID(String record) {
-        byte[] recordBytes = record.getBytes(DEFAULT_CHARSET);
-        byte[] md5sum = this.md5.digest(recordBytes);
-        String featureID = String.format("%032X", new BigInteger(1, md5sum));
-        return featureID;
+        //drop the oldest buffered events
+        private void drop(int count) {
+            logger.error(this.featureTypeName + ": dropped " + count + " buffered events that could not be written");
+            this.pending.subList(0, count).clear();
+        }
+
+        synchronized void close() {
+            if (!this.flush()) {
+                this.drop(this.pending.size());
+            }
+            this.closeWriter();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void openWriter() throws IOException {
+            if (this.writer != null) {
+                return;
+            }
+            this.writer = this.dataStore.getFeatureWriterAppend(this.featureTypeName, Transaction.AUTO_COMMIT);
+            SimpleFeatureType featureType = this.writer.getFeatureType();
+            List<Map<String, String>> attributes = this.schema.getAttributes();
+            this.attributeIndexes = new int[attributes.size()];
+            this.attributeNames = new ArrayList<>(attributes.size());
+            this.converters = new Function[attributes.size()];
+            this.temporal = new boolean[attributes.size()];
+            for (int i = 0; i < attributes.size(); i++) {
+                this.attributeNames.add(attributes.get(i).get(ATTRIBUTE_NAME_KEY));
+                this.attributeIndexes[i] = featureType.indexOf(attributes.get(i).get(ATTRIBUTE_NAME_KEY));
+                if (this.attributeIndexes[i] < 0) {
+                    this.closeWriter();
+                    throw new IllegalArgumentException(attributes.get(i).get(ATTRIBUTE_NAME_KEY) +
+                            " is not an attribute of " + this.featureTypeName);
+                }
+                this.converters[i] = AttributeUtil.getConverter(attributes.get(i).get(ATTRIBUTE_TYPE_KEY));
+                this.temporal[i] = AttributeUtil.isTemporalType(attributes.get(i).get(ATTRIBUTE_TYPE_KEY));
+            }
+        }
+
+        private void closeWriter() {
+            if (this.writer != null) {
+                try {
+                    this.writer.close();
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                }
+                this.writer = null;
+            }
+        }
     }
 }
@@ -0,0 +1,38 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Strategy for generating feature ids of ingested records.
+ * Ids must be deterministic so that re-ingesting a record overwrites the existing feature.
+ * The md5 strategy is the default, it generates the ids of stores populated before the strategies were pluggable.
+ * The other strategies generate different ids for the same records, switching an existing store to one of them
+ * duplicates its features on re-ingestion unless the store is cleared and ingested again.
+ */
+public interface FeatureIdGenerator {
+    String HASH_STRATEGY = "hash";
+    String GRANULE_TIMESTAMP_STRATEGY = "granule_timestamp";
+    String MD5_STRATEGY = "md5";
+    String DEFAULT_STRATEGY = MD5_STRATEGY;
+
+    /**
+     * Generate the id of a record given its raw values and the feature built from it.
+     * The string form of values is the record key the md5 strategy hashes.
+     */
+    String generateFeatureID(Iterable<String> values, SimpleFeature feature);
+
+    static FeatureIdGenerator getGenerator(String strategy) {
+        if (strategy == null) {
+            strategy = DEFAULT_STRATEGY;
+        }
+        if (HASH_STRATEGY.equals(strategy)) {
+            return new HashFeatureIdGenerator();
+        } else if (GRANULE_TIMESTAMP_STRATEGY.equals(strategy)) {
+            return new GranuleTimestampFeatureIdGenerator(getGenerator(DEFAULT_STRATEGY));
+        } else if (MD5_STRATEGY.equals(strategy)) {
+            return new MD5FeatureIdGenerator();
+        } else {
+            throw new IllegalArgumentException("Unknown feature id strategy " + strategy);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Notified for every feature written into the datastore of a pipeline.
+ */
+public interface FeatureIngestListener {
+
+    /**
+     * Called after the feature is written and flushed to the datastore, features of a batch that fails to be
+     * written are not announced. The feature must not be retained by the listener.
+     *
+     * @param featureTypeName feature type the feature was written to
+     * @param feature         written feature
+     */
+    void onFeatureIngested(String featureTypeName, SimpleFeature feature);
+}
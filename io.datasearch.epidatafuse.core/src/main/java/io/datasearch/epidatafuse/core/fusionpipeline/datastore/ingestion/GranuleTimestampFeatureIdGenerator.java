@@ -0,0 +1,33 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.AttributeUtil;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.Date;
+
+/**
+ * Feature ids composed of the spatial granule and the timestamp of the record, so that a later observation of a
+ * granule at the same time replaces the earlier one. Records without both fall back to the given generator.
+ */
+public class GranuleTimestampFeatureIdGenerator implements FeatureIdGenerator {
+    private static final String DTG_ATTRIBUTE = "dtg";
+    private static final char KEY_SEPARATOR = '_';
+    private FeatureIdGenerator fallbackGenerator;
+
+    public GranuleTimestampFeatureIdGenerator(FeatureIdGenerator fallbackGenerator) {
+        this.fallbackGenerator = fallbackGenerator;
+    }
+
+    @Override
+    public String generateFeatureID(Iterable<String> values, SimpleFeature feature) {
+        if (feature != null && feature.getFeatureType().indexOf(AttributeUtil.SPATIAL_GRANULE_ATTRIBUTE) >= 0
+                && feature.getFeatureType().indexOf(DTG_ATTRIBUTE) >= 0) {
+            Object granule = feature.getAttribute(AttributeUtil.SPATIAL_GRANULE_ATTRIBUTE);
+            Object dtg = feature.getAttribute(DTG_ATTRIBUTE);
+            if (granule != null && dtg instanceof Date) {
+                return granule.toString() + KEY_SEPARATOR + ((Date) dtg).getTime();
+            }
+        }
+        return this.fallbackGenerator.generateFeatureID(values, feature);
+    }
+}
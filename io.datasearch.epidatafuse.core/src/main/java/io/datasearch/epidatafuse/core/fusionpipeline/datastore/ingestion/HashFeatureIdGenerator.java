@@ -0,0 +1,175 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.Arrays;
+
+/**
+ * Feature ids from a 128 bit MurmurHash3 (x64 variant) of the raw record values.
+ * Values are encoded as UTF-8 into a per thread buffer, separated by a unit separator.
+ */
+public class HashFeatureIdGenerator implements FeatureIdGenerator {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte VALUE_SEPARATOR = 0x1F;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    @Override
+    public String generateFeatureID(Iterable<String> values, SimpleFeature feature) {
+        Buffers buffer = this.buffers.get();
+        int length = 0;
+        boolean first = true;
+        for (String value : values) {
+            if (!first) {
+                length = buffer.put(length, VALUE_SEPARATOR);
+            }
+            first = false;
+            if (value != null) {
+                length = buffer.putUTF8(length, value);
+            }
+        }
+        long[] hash = buffer.hash;
+        murmur3(buffer.bytes, length, hash);
+        toHex(hash[0], buffer.hex, 0);
+        toHex(hash[1], buffer.hex, 16);
+        return new String(buffer.hex);
+    }
+
+    /**
+     * MurmurHash3_x64_128 of the first length bytes with seed 0, written to out.
+     */
+    static void murmur3(byte[] data, int length, long[] out) {
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tail = blocks * 16;
+        int remaining = length & 15;
+        if (remaining > 8) {
+            long k2 = 0;
+            for (int i = remaining - 1; i >= 8; i--) {
+                k2 ^= ((long) data[tail + i] & 0xff) << ((i - 8) * 8);
+            }
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+        if (remaining > 0) {
+            long k1 = 0;
+            for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                k1 ^= ((long) data[tail + i] & 0xff) << (i * 8);
+            }
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    /**
+     * Write the value as 16 upper case hex digits into the buffer starting at offset.
+     */
+    static void toHex(long value, char[] buffer, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            buffer[offset + i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        return ((long) data[offset] & 0xff)
+                | (((long) data[offset + 1] & 0xff) << 8)
+                | (((long) data[offset + 2] & 0xff) << 16)
+                | (((long) data[offset + 3] & 0xff) << 24)
+                | (((long) data[offset + 4] & 0xff) << 32)
+                | (((long) data[offset + 5] & 0xff) << 40)
+                | (((long) data[offset + 6] & 0xff) << 48)
+                | (((long) data[offset + 7] & 0xff) << 56);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Reused encoding and output buffers of a thread.
+     */
+    private static class Buffers {
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private final long[] hash = new long[2];
+        private final char[] hex = new char[32];
+
+        private int put(int position, byte value) {
+            ensureCapacity(position + 1);
+            this.bytes[position] = value;
+            return position + 1;
+        }
+
+        private int putUTF8(int position, String value) {
+            ensureCapacity(position + value.length() * 3);
+            byte[] out = this.bytes;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    out[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[position++] = (byte) (0xC0 | (c >> 6));
+                    out[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    out[position++] = (byte) (0xE0 | (c >> 12));
+                    out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return position;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(capacity, this.bytes.length * 2));
+            }
+        }
+    }
+}
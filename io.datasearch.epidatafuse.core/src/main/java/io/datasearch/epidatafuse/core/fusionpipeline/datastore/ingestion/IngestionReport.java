@@ -0,0 +1,56 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per data source outcome of a bulk ingestion.
+ */
+public class IngestionReport {
+
+    private Map<String, Integer> ingestedRecords = new LinkedHashMap<>();
+    private Map<String, String> failures = new LinkedHashMap<>();
+    private long elapsedTime;
+
+    public synchronized void addSuccess(String dataSource, int records) {
+        this.ingestedRecords.put(dataSource, records);
+    }
+
+    public synchronized void addFailure(String dataSource, String error) {
+        this.failures.put(dataSource, error);
+    }
+
+    public synchronized int getIngestedRecords() {
+        int total = 0;
+        for (Integer records : this.ingestedRecords.values()) {
+            total += records;
+        }
+        return total;
+    }
+
+    public synchronized Map<String, Integer> getIngestedRecordsPerSource() {
+        return new LinkedHashMap<>(this.ingestedRecords);
+    }
+
+    public synchronized List<String> getFailedSources() {
+        return new ArrayList<>(this.failures.keySet());
+    }
+
+    public synchronized Map<String, String> getFailures() {
+        return new LinkedHashMap<>(this.failures);
+    }
+
+    public synchronized boolean isSuccessful() {
+        return this.failures.isEmpty();
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+}
@@ -0,0 +1,42 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Feature ids as upper case hex MD5 of the string form of the record, the ids generated before the strategies were
+ * pluggable. CSV rows are hashed as CSVRecord.toString(), shapefile features as their source feature id and streamed
+ * events as the map of attribute names to values, see {@link SourceRecord}.
+ */
+public class MD5FeatureIdGenerator implements FeatureIdGenerator {
+    private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    //message digests are not thread safe
+    private final ThreadLocal<MessageDigest> md5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 could not be instantiated!", e);
+        }
+    });
+
+    @Override
+    public String generateFeatureID(Iterable<String> values, SimpleFeature feature) {
+        byte[] md5sum = this.md5.get().digest(values.toString().getBytes(DEFAULT_CHARSET));
+        char[] hex = new char[32];
+        HashFeatureIdGenerator.toHex(getLong(md5sum, 0), hex, 0);
+        HashFeatureIdGenerator.toHex(getLong(md5sum, 8), hex, 16);
+        return new String(hex);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
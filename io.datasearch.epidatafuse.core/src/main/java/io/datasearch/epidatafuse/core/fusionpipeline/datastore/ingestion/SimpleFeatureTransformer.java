@@ -13,6 +13,7 @@ import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
@@ -25,14 +26,19 @@ import org.opengis.referencing.operation.MathTransform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigInteger;
+import java.io.Flushable;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -48,7 +54,7 @@ public class SimpleFeatureTransformer {
     private static final String ATTRIBUTE_TRANSFORMATION_KEY = "attribute_transformation";
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     private static final Map<String, CSVFormat> CSV_FORMAT = new HashMap<>();
-    private MessageDigest md5;
+    private List<FeatureIngestListener> ingestListeners;
 
     static {
         CSV_FORMAT.put("Excel", CSVFormat.EXCEL);
@@ -56,38 +62,109 @@ public class SimpleFeatureTransformer {
     }
 
     public SimpleFeatureTransformer() {
-        try {
-            this.md5 = MessageDigest.getInstance("MD5");
-        } catch (Exception e) {
-            logger.error("MD5 could not be instantiated!");
-        }
+        this(new ArrayList<>());
     }
 
-    public int transformAndWrite(DataStore dataStore, IngestConfig ingestConfig,
-                                 SimpleFeatureTypeSchema simpleFeatureTypeSchema) throws Exception {
-        int counter = 0;
+    public SimpleFeatureTransformer(List<FeatureIngestListener> ingestListeners) {
+        this.ingestListeners = ingestListeners;
+    }
+
+    public IngestionReport transformAndWrite(DataStore dataStore, IngestConfig ingestConfig,
+                                             SimpleFeatureTypeSchema simpleFeatureTypeSchema) throws Exception {
+        IngestionReport report = new IngestionReport();
+        long startTime = System.currentTimeMillis();
         String sourceType = ingestConfig.getSourceType();
-        String sourceFormat = ingestConfig.getSourceFormat();
-        FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
-                dataStore.getFeatureWriterAppend(ingestConfig.getFeatureName(), Transaction.AUTO_COMMIT);
-        Map<String, Integer> transformations = ingestConfig.getTransformations();
+        FeatureIdGenerator idGenerator = FeatureIdGenerator.getGenerator(ingestConfig.getFeatureIdStrategy());
         if (DELIMITED_TEXT_TYPE.equals(sourceType)) {
+            CSVColumnPlan plan = new CSVColumnPlan(simpleFeatureTypeSchema,
+                    dataStore.getSchema(ingestConfig.getFeatureName()), ingestConfig.getTransformations());
+            int threads = Math.min(ingestConfig.getIngestionThreads(), ingestConfig.getDataSources().size());
+            if (threads > 1) {
+                this.transformCSVFilesInParallel(dataStore, ingestConfig, simpleFeatureTypeSchema, plan, idGenerator,
+                        threads, report);
+            } else {
+                for (String dataSource : ingestConfig.getDataSources()) {
+                    this.transformCSVFile(dataStore, ingestConfig, simpleFeatureTypeSchema, plan, idGenerator,
+                            dataSource, report);
+                }
+            }
+        } else if (SHAPE_FILE_TYPE.equals(sourceType)) {
+            this.transformShapeFiles(dataStore, ingestConfig, simpleFeatureTypeSchema, idGenerator, report);
+        }
+        long elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1);
+        report.setElapsedTime(elapsedTime);
+        int counter = report.getIngestedRecords();
+        logger.info("Ingested " + counter + " records into " + simpleFeatureTypeSchema.getSimpleFeatureTypeName() +
+                " in " + elapsedTime + " ms (" + (counter * 1000L / elapsedTime) + " records/s)");
+        if (!report.isSuccessful()) {
+            logger.error("Ingestion failed for " + report.getFailedSources());
+        }
+        return report;
+    }
+
+    private void transformCSVFilesInParallel(DataStore dataStore, IngestConfig ingestConfig,
+                                             SimpleFeatureTypeSchema simpleFeatureTypeSchema, CSVColumnPlan plan,
+                                             FeatureIdGenerator idGenerator, int threads,
+                                             IngestionReport report) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
             for (String dataSource : ingestConfig.getDataSources()) {
+                tasks.add(() -> {
+                    this.transformCSVFile(dataStore, ingestConfig, simpleFeatureTypeSchema, plan, idGenerator,
+                            dataSource, report);
+                    return null;
+                });
+            }
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    //every file is written through its own writer since feature writers are not thread safe
+    private void transformCSVFile(DataStore dataStore, IngestConfig ingestConfig,
+                                  SimpleFeatureTypeSchema simpleFeatureTypeSchema, CSVColumnPlan plan,
+                                  FeatureIdGenerator idGenerator, String dataSource, IngestionReport report) {
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
+        try {
+            //URL sourceFileUrl = getClass().getClassLoader().getResource(dataSource);
+            URL sourceFileUrl = Paths.get("public", "uploads",
+                    ingestConfig.getPipelineName(),
+                    simpleFeatureTypeSchema.getSimpleFeatureTypeName(),
+                    dataSource).toUri().toURL();
+            try (CSVParser parser = CSVParser.parse(sourceFileUrl, DEFAULT_CHARSET,
+                    CSV_FORMAT.get(ingestConfig.getSourceFormat()).withHeader().withSkipHeaderRecord())) {
+                writer = dataStore.getFeatureWriterAppend(ingestConfig.getFeatureName(), Transaction.AUTO_COMMIT);
+                int records = transformCSV(simpleFeatureTypeSchema, writer, parser, plan, idGenerator,
+                        ingestConfig.getBatchSize());
+                report.addSuccess(dataSource, records);
+            }
+        } catch (Exception e) {
+            logger.error(dataSource + ": " + e.getMessage());
+            report.addFailure(dataSource, e.getMessage());
+        } finally {
+            if (writer != null) {
                 try {
-                    //URL sourceFileUrl = getClass().getClassLoader().getResource(dataSource);
-                    URL sourceFileUrl = Paths.get("public", "uploads",
-                            ingestConfig.getPipelineName(),
-                            simpleFeatureTypeSchema.getSimpleFeatureTypeName(),
-                            dataSource).toUri().toURL();
-                    CSVParser parser = CSVParser.parse(sourceFileUrl, DEFAULT_CHARSET,
-                            CSV_FORMAT.get(sourceFormat).withHeader().withSkipHeaderRecord());
-                    counter += transformCSV(simpleFeatureTypeSchema, writer, parser, transformations);
-                } catch (Exception e) {
+                    writer.close();
+                } catch (IOException e) {
                     logger.error(e.getMessage());
                 }
             }
-        } else if (SHAPE_FILE_TYPE.equals(sourceType)) {
+        }
+    }
+
+    private void transformShapeFiles(DataStore dataStore, IngestConfig ingestConfig,
+                                     SimpleFeatureTypeSchema simpleFeatureTypeSchema,
+                                     FeatureIdGenerator idGenerator, IngestionReport report) throws IOException {
+        int batchSize = ingestConfig.getBatchSize();
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+                dataStore.getFeatureWriterAppend(ingestConfig.getFeatureName(), Transaction.AUTO_COMMIT);
+        Map<String, Integer> transformations = ingestConfig.getTransformations();
+        int counter = 0;
+        try {
             for (String dataSource : ingestConfig.getDataSources()) {
+                int fileStart = counter;
                 try {
                     URL sourceFileUrl = Paths.get("public", "uploads",
                             ingestConfig.getPipelineName(),
@@ -108,7 +185,6 @@ public class SimpleFeatureTransformer {
                     while (iterator.hasNext()) {
                         SimpleFeature tempNext = iterator.next();
                         SimpleFeature next = writer.next();
-                        next.getUserData().put(Hints.PROVIDED_FID, generateFeatureID(tempNext.getID()));
 //                        next.setDefaultGeometry(
 //                                JTS.transform((Geometry) tempNext.getDefaultGeometryProperty().getValue(),
 //                                        mathTransform));
@@ -123,48 +199,72 @@ public class SimpleFeatureTransformer {
                                 next.setAttribute(attributeName, tempNext.getAttribute(transformationIndex));
                             }
                         }
+                        next.getUserData().put(Hints.PROVIDED_FID,
+                                idGenerator.generateFeatureID(SourceRecord.ofFeatureId(tempNext.getID()), next));
                         writer.write();
                         counter++;
-                        logger.info("Added new record," + next.getID() + " to " +
-                                simpleFeatureTypeSchema.getSimpleFeatureTypeName());
+                        if (counter % batchSize == 0) {
+                            flush(writer);
+                        }
                     }
                     iterator.close();
                     tempDataStore.dispose();
+                    report.addSuccess(dataSource, counter - fileStart);
                 } catch (Throwable e) {
                     logger.error(e.getMessage());
+                    report.addFailure(dataSource, e.getMessage());
                 }
             }
+        } finally {
+            writer.close();
         }
-        writer.close();
-        return counter;
     }
 
     public int transformCSV(SimpleFeatureTypeSchema schema,
                             FeatureWriter<SimpleFeatureType, SimpleFeature> writer,
-                            CSVParser parser, Map<String, Integer> transformations) throws Exception {
+                            CSVParser parser, CSVColumnPlan plan, FeatureIdGenerator idGenerator,
+                            int batchSize) throws Exception {
         int counter = 0;
+        //written features are announced to the ingest listeners once they are flushed
+        List<SimpleFeature> unflushed = new ArrayList<>();
         for (CSVRecord record : parser) {
             SimpleFeature next = writer.next();
-            next.getUserData().put(Hints.PROVIDED_FID, generateFeatureID(record.toString()));
-            for (Map<String, String> attribute : schema.getAttributes()) {
-                String attributeName = attribute.get(ATTRIBUTE_NAME_KEY);
-                String attributeType = attribute.get(ATTRIBUTE_TYPE_KEY);
-                int transformationIndex = transformations.get(attributeName);
-                String attributeValue = record.get(transformationIndex);
-                Object value = AttributeUtil.convert(attributeValue, attributeType);
-                next.setAttribute(attributeName, value);
-            }
+            plan.apply(record, next);
+            next.getUserData().put(Hints.PROVIDED_FID, idGenerator.generateFeatureID(record, next));
             writer.write();
+            if (!this.ingestListeners.isEmpty()) {
+                unflushed.add(SimpleFeatureBuilder.copy(next));
+            }
             counter++;
-            logger.info("Added new Feature," + next.toString() + " to " + schema.getSimpleFeatureTypeName());
+            if (counter % batchSize == 0) {
+                flush(writer);
+                this.notifyIngested(schema.getSimpleFeatureTypeName(), unflushed);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Flushed " + counter + " records to " + schema.getSimpleFeatureTypeName());
+                }
+            }
         }
+        flush(writer);
+        this.notifyIngested(schema.getSimpleFeatureTypeName(), unflushed);
         return counter;
     }
 
-    public String generateFeatureID(String record) {
-        byte[] recordBytes = record.getBytes(DEFAULT_CHARSET);
-        byte[] md5sum = this.md5.digest(recordBytes);
-        String featureID = String.format("%032X", new BigInteger(1, md5sum));
-        return featureID;
+    private void notifyIngested(String featureTypeName, List<SimpleFeature> features) {
+        for (SimpleFeature feature : features) {
+            for (FeatureIngestListener listener : this.ingestListeners) {
+                listener.onFeatureIngested(featureTypeName, feature);
+            }
+        }
+        features.clear();
+    }
+
+    /**
+     * GeoMesa writers only support auto commit and buffer mutations until flushed, so batches are bounded by
+     * flushing the writer rather than by committing a transaction.
+     */
+    private void flush(FeatureWriter<SimpleFeatureType, SimpleFeature> writer) throws IOException {
+        if (writer instanceof Flushable) {
+            ((Flushable) writer).flush();
+        }
     }
 }
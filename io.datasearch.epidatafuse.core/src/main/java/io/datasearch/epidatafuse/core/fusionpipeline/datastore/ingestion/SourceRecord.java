@@ -0,0 +1,47 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Raw values of a shapefile feature or a streamed event. The string form is the record key their ids were hashed
+ * from before the id strategies were pluggable, the source feature id of a shapefile feature and the map of
+ * attribute names to values of an event.
+ */
+public class SourceRecord implements Iterable<String> {
+    private List<String> names;
+    private List<String> values;
+
+    private SourceRecord(List<String> names, List<String> values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    public static SourceRecord ofFeatureId(String featureId) {
+        return new SourceRecord(null, Arrays.asList(featureId));
+    }
+
+    public static SourceRecord ofEvent(List<String> names, String[] values) {
+        return new SourceRecord(names, Arrays.asList(values));
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return this.values.iterator();
+    }
+
+    @Override
+    public String toString() {
+        if (this.names == null) {
+            return String.valueOf(this.values.get(0));
+        }
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < this.names.size(); i++) {
+            record.put(this.names.get(i), this.values.get(i));
+        }
+        return record.toString();
+    }
+}
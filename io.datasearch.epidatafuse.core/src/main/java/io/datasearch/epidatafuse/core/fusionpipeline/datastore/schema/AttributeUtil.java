@@ -9,6 +9,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * AttributeUtil is a util class for building CQL attribute syntax.
@@ -56,6 +57,14 @@ public class AttributeUtil {
     private static final List<String> GEOMETRIC_TYPE_LIST = Arrays.asList(GEOMETRY,
             GEOMETRY_COLLECTION, POINT, POLYGON, LINESTRING, MULTI_POINT, MULTI_LINE_STRING, MULTI_POLYGON);
     private static final Map<String, String> ATTRIBUTE_TYPE_MAP;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.US);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmm", Locale.US);
+    private static final Function<String, Object> FLOAT_CONVERTER = Float::parseFloat;
+    private static final Function<String, Object> DATE_CONVERTER = value ->
+            Date.from(LocalDate.parse(value, DATE_FORMAT).atStartOfDay(ZoneOffset.UTC).toInstant());
+    private static final Function<String, Object> TIMESTAMP_CONVERTER = value ->
+            Date.from(LocalDate.parse(value, TIMESTAMP_FORMAT).atStartOfDay(ZoneOffset.UTC).toInstant());
+    private static final Function<String, Object> IDENTITY_CONVERTER = value -> value;
 
     static {
         ATTRIBUTE_TYPE_MAP = new HashMap<>();
@@ -126,30 +135,34 @@ public class AttributeUtil {
     }
 
     public static Object convert(String value, String type) {
-        if (ATTRIBUTE_TYPE_MAP.get(type) != null) {
-            Object attributeValue;
-            switch (type) {
-                case FLOAT:
-                    attributeValue = Float.parseFloat(value);
-                    return attributeValue;
-                case DATE:
-                    DateTimeFormatter dateFormat =
-                            DateTimeFormatter.ofPattern("yyyyMMdd", Locale.US);
-                    attributeValue = Date.from(LocalDate.parse(value, dateFormat)
-                            .atStartOfDay(ZoneOffset.UTC).toInstant());
-                    break;
-                case TIMESTAMP:
-                    DateTimeFormatter timeStampFormat = DateTimeFormatter.ofPattern("yyyyMMddHHmm", Locale.US);
-                    attributeValue =
-                            Date.from(LocalDate.parse(value, timeStampFormat).atStartOfDay(ZoneOffset.UTC).toInstant());
-                    break;
-                default:
-                    attributeValue = value;
-            }
-            return attributeValue;
-        } else {
-            return value;
+        return getConverter(type).apply(value);
+    }
+
+    /**
+     * Converter from the string form of a value to the value of an attribute of the given type.
+     * Converters are shared and thread safe.
+     */
+    public static Function<String, Object> getConverter(String type) {
+        if (type == null || ATTRIBUTE_TYPE_MAP.get(type) == null) {
+            return IDENTITY_CONVERTER;
         }
+        switch (type) {
+            case FLOAT:
+                return FLOAT_CONVERTER;
+            case DATE:
+                return DATE_CONVERTER;
+            case TIMESTAMP:
+                return TIMESTAMP_CONVERTER;
+            default:
+                return IDENTITY_CONVERTER;
+        }
+    }
+
+    /**
+     * Whether attributes of the given type hold dates.
+     */
+    public static boolean isTemporalType(String type) {
+        return DATE.equals(type) || TIMESTAMP.equals(type);
     }
 
     public static List<String> getGeometricTypeList() {
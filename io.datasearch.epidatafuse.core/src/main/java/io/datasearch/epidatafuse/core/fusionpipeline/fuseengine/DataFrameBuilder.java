@@ -1,43 +1,198 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
 
+import io.datasearch.epidatafuse.core.fusionpipeline.metrics.FusionMetrics;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.DataFrame;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.DataFrameCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * For aggregating data.
+ * Data frames are persisted by a writer thread behind a bounded queue so that fusion runs do not wait for the disk.
+ * A frame is written to a temporary file and renamed once complete, readers never see partially written frames.
+ * When the queue is full the frame is written on the calling thread.
  */
 public class DataFrameBuilder {
 
     private static final Logger logger = LoggerFactory.getLogger(DataFrameBuilder.class);
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long SHUTDOWN_TIMEOUT = 30;
+    private String pipelineName;
+    private FusionMetrics metrics;
+    private int queueCapacity;
+    private ThreadPoolExecutor writer;
+    private final AtomicLong writtenFrames = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong queueFullCount = new AtomicLong();
+    private final AtomicLong totalPersistenceMillis = new AtomicLong();
+    private volatile long lastPersistenceMillis;
+    private volatile long maxPersistenceMillis;
+    private volatile long lastQueueWaitMillis;
 
-    public void writeToCSV(ArrayList<String> csvRecords, String fileName, String pipelineName) {
-        Path rootDir = Paths.get("public", "output", pipelineName);
+    public DataFrameBuilder(String pipelineName, FusionMetrics metrics) {
+        this.pipelineName = pipelineName;
+        this.metrics = metrics;
+        this.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Replace the writer when the capacity changes. Frames queued on the previous writer are still written.
+     */
+    public synchronized void setQueueCapacity(int queueCapacity) {
+        if (this.writer != null && this.queueCapacity == queueCapacity) {
+            return;
+        }
+        ThreadPoolExecutor previousWriter = this.writer;
+        this.queueCapacity = queueCapacity;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), runnable -> {
+            Thread thread = new Thread(runnable, this.pipelineName + "-frame-writer");
+            thread.setDaemon(true);
+            return thread;
+        }, (task, executor) -> {
+            this.queueFullCount.incrementAndGet();
+            logger.warn("Frame write queue is full. writing on the fusion thread");
+            if (!executor.isShutdown()) {
+                task.run();
+            }
+        });
+        if (previousWriter != null) {
+            previousWriter.shutdown();
+        }
+    }
+
+    /**
+     * Write a data frame encoded in the binary columnar format.
+     */
+    public void writeFrame(ByteBuffer encodedFrame, String fileName, String pipelineName) {
+        this.submit(pipelineName, fileName + DataFrameCodec.FILE_EXTENSION, FusionMetrics.FRAME_WRITE,
+                channel -> DataFrameCodec.write(encodedFrame, channel));
+    }
+
+    public void writeToCSV(DataFrame dataFrame, String fileName, String pipelineName) {
+        this.submit(pipelineName, fileName + CSV_EXTENSION, FusionMetrics.CSV_WRITE, channel -> {
+            Writer writer = new BufferedWriter(
+                    Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), WRITE_BUFFER_SIZE),
+                    WRITE_BUFFER_SIZE);
+            dataFrame.writeCSVRecords(writer);
+            writer.flush();
+        });
+    }
+
+    private void submit(String pipelineName, String fileName, String stage, FrameWriter frameWriter) {
+        long queuedAt = System.nanoTime();
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.writer;
+        }
+        executor.execute(() -> {
+            this.lastQueueWaitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt);
+            this.persist(pipelineName, fileName, stage, frameWriter);
+        });
+    }
 
-        String dir = "public/output/" + pipelineName + "/";
-        String csvFileName = dir + fileName + ".csv";
+    private void persist(String pipelineName, String fileName, String stage, FrameWriter frameWriter) {
+        long startNanos = System.nanoTime();
+        Path rootDir = Paths.get("public", "output", pipelineName);
+        Path file = rootDir.resolve(fileName);
+        Path tempFile = rootDir.resolve(fileName + TEMP_EXTENSION);
         try {
             if (!Files.exists(rootDir)) {
                 Files.createDirectories(rootDir);
             }
-            File file = new File(csvFileName);
-            Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
-            PrintWriter pw = new PrintWriter(w);
-            for (String record : csvRecords) {
-                pw.println(record);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                frameWriter.write(channel);
+                channel.force(true);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
             }
-            pw.close();
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            this.lastPersistenceMillis = elapsed;
+            this.maxPersistenceMillis = Math.max(this.maxPersistenceMillis, elapsed);
+            this.totalPersistenceMillis.addAndGet(elapsed);
+            this.writtenFrames.incrementAndGet();
+            this.metrics.stageDuration(null, stage).observeNanos(elapsedNanos);
         } catch (Throwable e) {
-            logger.error(e.getMessage());
+            this.failedWrites.incrementAndGet();
+            this.metrics.errors(null, stage).increment();
+            logger.error(fileName + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ioException) {
+                logger.error(ioException.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stop accepting frames and wait for the queued frames to be written.
+     */
+    public void shutdown() {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.writer;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.error("Frame writer of " + this.pipelineName + " did not finish pending writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
+
+    public Map<String, Object> getStatistics() {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.writer;
+        }
+        long written = this.writtenFrames.get();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("queuedFrames", executor.getQueue().size());
+        statistics.put("queueCapacity", this.queueCapacity);
+        statistics.put("writtenFrames", written);
+        statistics.put("failedWrites", this.failedWrites.get());
+        statistics.put("queueFullCount", this.queueFullCount.get());
+        statistics.put("lastQueueWaitMillis", this.lastQueueWaitMillis);
+        statistics.put("lastPersistenceMillis", this.lastPersistenceMillis);
+        statistics.put("maxPersistenceMillis", this.maxPersistenceMillis);
+        statistics.put("averagePersistenceMillis", written > 0 ? this.totalPersistenceMillis.get() / written : 0);
+        return statistics;
+    }
+
+    /**
+     * Writes the content of a frame to the channel of its temporary file.
+     */
+    private interface FrameWriter {
+        void write(FileChannel channel) throws IOException;
+    }
 }
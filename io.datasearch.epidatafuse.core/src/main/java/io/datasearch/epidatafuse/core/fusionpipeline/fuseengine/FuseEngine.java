@@ -1,23 +1,39 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
 
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.PipelineDataStore;
+import io.datasearch.epidatafuse.core.fusionpipeline.metrics.FusionMetrics;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.configuration.AggregationConfig;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.configuration.GranularityRelationConfig;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.DataFrame;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.DataFrameCodec;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe.RecentFrameBuffer;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.SpatioTemporallyAggregatedCollection;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.ConceptHierarchy;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.GranularityMap;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.SpatialGranularityRelationMap;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.TemporalGranularityMap;
+import io.datasearch.epidatafuse.core.util.FusionConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * For data fusion.
@@ -36,24 +52,125 @@ public class FuseEngine {
     private long fusionFrequency;
     private String fusionFQUnit;
     private String fusionFQMultiplier;
-    private Timer timer = new Timer();
+    private ScheduledFuture<?> scheduledRun;
     private String pipelineName;
     private String initialTimestamp;
     private ConceptHierarchy spatialConceptHierarchy;
+    private FusionConfig fusionConfig;
+    private ForkJoinPool aggregationPool;
+    private ExecutorService featureAggregationExecutor;
+    //pools replaced while a tick was running, shut down once the running ticks finish
+    private List<ExecutorService> retiredExecutors = new ArrayList<>();
+    private int runningTicks = 0;
+    private RecentFrameBuffer recentFrames;
+    private FusionMetrics metrics;
 
     public FuseEngine(PipelineDataStore dataStore, String pipelineName,
                       Map<String, GranularityRelationConfig> granularityRelationConfigs,
                       Map<String, AggregationConfig> aggregationConfigs) {
         this.dataStore = dataStore;
+        this.pipelineName = pipelineName;
+        this.metrics = new FusionMetrics(pipelineName);
         this.granularityRelationMapper = new GranularityRelationMapper(this.dataStore);
-        this.granularityConvertor = new GranularityConvertor(this.dataStore);
+        this.granularityConvertor = new GranularityConvertor(this.dataStore, this.metrics);
         this.granularityRelationConfigs = granularityRelationConfigs;
         this.aggregationConfigs = aggregationConfigs;
-        this.dataFrameBuilder = new DataFrameBuilder();
+        this.dataFrameBuilder = new DataFrameBuilder(pipelineName, this.metrics);
         this.scheduler = new Scheduler();
-        this.pipelineName = pipelineName;
         this.spatialConceptHierarchy = new ConceptHierarchy();
+        this.recentFrames = new RecentFrameBuffer(0, 0);
         scheduler.setFuseEngine(this);
+        this.setFusionConfig(new FusionConfig());
+    }
+
+    /**
+     * Apply the runtime configuration. Replaces the aggregation pool of the pipeline when the parallelism changes,
+     * the previous pool is shut down once the ticks using it have finished.
+     *
+     * @param fusionConfig fuse engine configuration
+     */
+    public synchronized void setFusionConfig(FusionConfig fusionConfig) {
+        ForkJoinPool previousPool = this.aggregationPool;
+        if (fusionConfig.isParallelAggregation()) {
+            if (previousPool == null || previousPool.getParallelism() != fusionConfig.getAggregationParallelism()) {
+                this.aggregationPool = new ForkJoinPool(fusionConfig.getAggregationParallelism());
+            }
+        } else {
+            this.aggregationPool = null;
+        }
+        this.granularityConvertor.setAggregationPool(this.aggregationPool);
+        this.granularityConvertor.setIncrementalTemporalAggregation(fusionConfig.isIncrementalTemporalAggregation());
+        if (previousPool != null && previousPool != this.aggregationPool) {
+            this.retire(previousPool);
+        }
+
+        if (this.fusionConfig == null ||
+                this.fusionConfig.getFeatureAggregationThreads() != fusionConfig.getFeatureAggregationThreads()) {
+            ExecutorService previousExecutor = this.featureAggregationExecutor;
+            AtomicInteger threadCount = new AtomicInteger();
+            this.featureAggregationExecutor =
+                    Executors.newFixedThreadPool(fusionConfig.getFeatureAggregationThreads(), runnable -> {
+                        Thread thread = new Thread(runnable,
+                                this.pipelineName + "-feature-aggregation-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            if (previousExecutor != null) {
+                this.retire(previousExecutor);
+            }
+        }
+        this.dataFrameBuilder.setQueueCapacity(fusionConfig.getPersistenceQueueCapacity());
+        this.recentFrames.resize(fusionConfig.getRecentFrames(), fusionConfig.getRecentFramesMemory() * 1024 * 1024);
+        boolean modeChanged = this.fusionConfig != null &&
+                !this.fusionConfig.getScheduleMode().equals(fusionConfig.getScheduleMode());
+        this.fusionConfig = fusionConfig;
+        if (modeChanged && this.scheduledRun != null) {
+            this.schedule(this.fusionFrequency);
+        }
+    }
+
+    /**
+     * Apply the given values on top of the current configuration.
+     */
+    public synchronized void updateFusionConfig(Map<String, Object> configurations) {
+        this.setFusionConfig(this.fusionConfig.merge(configurations));
+    }
+
+    public synchronized FusionConfig getFusionConfig() {
+        return fusionConfig;
+    }
+
+    private synchronized void retire(ExecutorService executor) {
+        if (this.runningTicks == 0) {
+            executor.shutdown();
+        } else {
+            this.retiredExecutors.add(executor);
+        }
+    }
+
+    private synchronized void finishTick() {
+        this.runningTicks--;
+        if (this.runningTicks == 0) {
+            this.retiredExecutors.forEach(ExecutorService::shutdown);
+            this.retiredExecutors.clear();
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (this.scheduledRun != null) {
+            this.scheduledRun.cancel(false);
+            this.scheduledRun = null;
+        }
+        this.featureAggregationExecutor.shutdownNow();
+        this.retiredExecutors.forEach(ExecutorService::shutdownNow);
+        this.retiredExecutors.clear();
+        if (this.aggregationPool != null) {
+            this.aggregationPool.shutdown();
+            this.aggregationPool = null;
+            this.granularityConvertor.setAggregationPool(null);
+        }
+        this.dataFrameBuilder.shutdown();
+        this.metrics.clear();
     }
 
     public Map<String, GranularityMap> invokeGranularityMappingProcess(
@@ -70,8 +187,14 @@ public class FuseEngine {
 
         Map<String, GranularityMap> granularityMaps = new HashMap<>();
         granularityRelationConfigs.forEach((featureType, granularityRelationConfig) -> {
-            SpatialGranularityRelationMap spatialMap =
-                    this.granularityRelationMapper.buildSpatialGranularityMap(granularityRelationConfig);
+            String spatialAggregationMethod = null;
+            AggregationConfig aggregationConfig = this.aggregationConfigs.get(featureType);
+            if (aggregationConfig != null && aggregationConfig.getAggregationOn() != null) {
+                spatialAggregationMethod =
+                        aggregationConfig.getSpatialAggregationMethod(aggregationConfig.getAggregationOn());
+            }
+            SpatialGranularityRelationMap spatialMap = this.granularityRelationMapper
+                    .buildSpatialGranularityMap(granularityRelationConfig, spatialAggregationMethod);
             TemporalGranularityMap temporalMap =
                     this.granularityRelationMapper.buildTemporalMap(granularityRelationConfig);
 
@@ -92,32 +215,157 @@ public class FuseEngine {
     }
 
     public void invokeAggregationProcess() {
-
+        long startNanos = System.nanoTime();
         String dtg = LocalDateTime.now().toString();
 
         DataFrame dataFrame = new DataFrame(dtg);
 
         if ((granularityRelationMaps != null) && granularityRelationMaps.size() > 0) {
-            this.granularityRelationMaps.forEach((String featureTypeName, GranularityMap granularityMap) -> {
-                AggregationConfig aggregationConfig = this.aggregationConfigs.get(featureTypeName);
+            ExecutorService executor;
+            FusionConfig config;
+            synchronized (this) {
+                executor = this.featureAggregationExecutor;
+                config = this.fusionConfig;
+                this.runningTicks++;
+            }
+            try {
+                long timeout = config.getFeatureAggregationTimeout();
+
+                //feature types are independent until they are joined into the data frame
+                Map<String, FeatureAggregationTask> tasks = new LinkedHashMap<>();
+                Map<String, Future<SpatioTemporallyAggregatedCollection>> futures = new LinkedHashMap<>();
+                this.granularityRelationMaps.forEach((String featureTypeName, GranularityMap granularityMap) -> {
+                    FeatureAggregationTask task = new FeatureAggregationTask(granularityMap,
+                            this.aggregationConfigs.get(featureTypeName));
+                    tasks.put(featureTypeName, task);
+                    futures.put(featureTypeName, executor.submit(task::aggregate));
+                });
+
+                //every task gets its timeout once it runs, the tick as a whole is bounded by the waves of tasks
+                //the pool needs so that a task stuck behind a hung one does not block the tick forever
+                long waves = (tasks.size() + config.getFeatureAggregationThreads() - 1) /
+                        config.getFeatureAggregationThreads();
+                long tickDeadline = startNanos + TimeUnit.SECONDS.toNanos(timeout) * waves;
+
+                //collections are added on the calling thread in map order so the data frame layout is stable
+                futures.forEach((featureTypeName, future) -> {
+                    SpatioTemporallyAggregatedCollection spatioTemporallyAggregatedCollection = this.awaitAggregation(
+                            featureTypeName, tasks.get(featureTypeName), future, timeout, tickDeadline);
+                    if (spatioTemporallyAggregatedCollection != null) {
+                        dataFrame.addAggregatedFeatureType(spatioTemporallyAggregatedCollection);
+                    }
+                });
+
+                if (dataFrame.getFeatureTypeNames().isEmpty()) {
+                    this.metrics.errors(null, FusionMetrics.FUSION_RUN).increment();
+                    logger.error("Aggregation failed for every feature type. data frame is not written");
+                    return;
+                }
+
+                String fileName = "finalDataFrame_" + dataFrame.getSpatialGranularity() + "_" +
+                        dataFrame.getTemporalGranularity() + "_" + dtg;
+                //the frame is encoded once for the binary output and the recent frame buffer
+                if (config.isBinaryOutput() || this.recentFrames.isEnabled()) {
+                    try {
+                        ByteBuffer encodedFrame = DataFrameCodec.encode(dataFrame);
+                        if (config.isBinaryOutput()) {
+                            this.dataFrameBuilder.writeFrame(encodedFrame, fileName, pipelineName);
+                        }
+                        this.recentFrames.add(DataFrameCodec.decode(encodedFrame));
+                    } catch (Exception e) {
+                        logger.error(e.getMessage());
+                    }
+                }
+                if (config.isCSVOutput()) {
+                    this.dataFrameBuilder.writeToCSV(dataFrame, fileName, pipelineName);
+                }
+                this.metrics.recordStage(null, FusionMetrics.FUSION_RUN, startNanos);
+                this.metrics.features(null, FusionMetrics.FUSION_RUN)
+                        .add(dataFrame.getFinalSpatialGranules().size());
+            } finally {
+                this.finishTick();
+            }
+        } else {
+            logger.info("Cannot aggregate. granularity map is empty");
+        }
+    }
+
+    /**
+     * Wait for the aggregation of a feature type. The timeout is counted from the time the task starts running so
+     * that feature types queued behind others are not penalized, but no task is waited for past the tick deadline.
+     * A task that has not started by then is cancelled as timed out. Returns null if the aggregation failed or timed
+     * out.
+     */
+    private SpatioTemporallyAggregatedCollection awaitAggregation(
+            String featureTypeName, FeatureAggregationTask task,
+            Future<SpatioTemporallyAggregatedCollection> future, long timeout, long tickDeadline) {
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(timeout);
+        try {
+            while (true) {
+                if (timeoutNanos <= 0) {
+                    return future.get();
+                }
+                long startedAt = task.getStartedAt();
+                long deadline = startedAt == 0 ? tickDeadline : Math.min(startedAt + timeoutNanos, tickDeadline);
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0 && !future.isDone()) {
+                    future.cancel(true);
+                    this.metrics.errors(featureTypeName, FusionMetrics.FEATURE_AGGREGATION).increment();
+                    if (task.getStartedAt() == 0) {
+                        logger.error("Aggregation of " + featureTypeName + " timed out before it started");
+                    } else {
+                        logger.error("Aggregation of " + featureTypeName + " timed out after " + timeout +
+                                " seconds");
+                    }
+                    return null;
+                }
                 try {
-                    SpatioTemporallyAggregatedCollection spatioTemporallyAggregatedCollection =
-                            this.aggregate(granularityMap, aggregationConfig);
-                    dataFrame.addAggregatedFeatureType(spatioTemporallyAggregatedCollection);
-                } catch (IOException e) {
-                    e.getMessage();
+                    return future.get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    //the task may have started while it was queued, check again against its own deadline
+                    continue;
                 }
-            });
+            }
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            this.metrics.errors(featureTypeName, FusionMetrics.FEATURE_AGGREGATION).increment();
+            logger.error("Aggregation of " + featureTypeName + " failed. " + e.getCause().getMessage());
+            return null;
+        } catch (CancellationException e) {
+            logger.error("Aggregation of " + featureTypeName + " was cancelled");
+            return null;
+        }
+    }
 
-            ArrayList<String> csvRecords = dataFrame.createCSVRecords();
+    /**
+     * Aggregation of a single feature type for a fusion tick.
+     */
+    private class FeatureAggregationTask {
+        private GranularityMap granularityMap;
+        private AggregationConfig aggregationConfig;
+        private volatile long startedAt = 0;
+
+        FeatureAggregationTask(GranularityMap granularityMap, AggregationConfig aggregationConfig) {
+            this.granularityMap = granularityMap;
+            this.aggregationConfig = aggregationConfig;
+        }
 
-            String fileName =
-                    "finalDataFrame_" + dataFrame.getSpatialGranularity() + "_" + dataFrame.getTemporalGranularity() +
-                            "_" + dtg;
-            this.dataFrameBuilder.writeToCSV(csvRecords, fileName, pipelineName);
+        SpatioTemporallyAggregatedCollection aggregate() throws IOException {
+            this.startedAt = System.nanoTime();
+            SpatioTemporallyAggregatedCollection collection =
+                    FuseEngine.this.aggregate(granularityMap, aggregationConfig);
+            FuseEngine.this.metrics.recordStage(granularityMap.getFeatureTypeName(),
+                    FusionMetrics.FEATURE_AGGREGATION, this.startedAt);
+            FuseEngine.this.metrics.features(granularityMap.getFeatureTypeName(), FusionMetrics.FEATURE_AGGREGATION)
+                    .add(collection.getFeatureHashMap().size());
+            return collection;
+        }
 
-        } else {
-            logger.info("Cannot aggregate. granularity map is empty");
+        long getStartedAt() {
+            return startedAt;
         }
     }
 
@@ -130,12 +378,51 @@ public class FuseEngine {
         return spatioTemporallyAggregatedCollection;
     }
 
+    /**
+     * Drop the precomputed spatial weights of every granularity map built on the given granularity.
+     *
+     * @param granularityName re-ingested spatial granularity
+     */
+    public void invalidateSpatialWeights(String granularityName) {
+        if (this.granularityRelationMaps != null) {
+            this.granularityRelationMaps.values().forEach(granularityMap -> {
+                if (granularityName.equals(granularityMap.getBaseSpatialGranularity()) ||
+                        granularityName.equals(granularityMap.getTargetSpatialGranularity())) {
+                    granularityMap.getSpatialGranularityRelationMap().invalidateWeights();
+                }
+            });
+        }
+    }
+
+    public RecentFrameBuffer getRecentFrames() {
+        return recentFrames;
+    }
+
+    public FusionMetrics getMetrics() {
+        return metrics;
+    }
+
     public Scheduler getScheduler() {
         return scheduler;
     }
 
-    public void scheduleTasks() {
-        this.timer.schedule(scheduler, 0, this.fusionFrequency);
+    public synchronized void scheduleTasks() {
+        this.schedule(0);
+    }
+
+    private void schedule(long initialDelay) {
+        if (this.scheduledRun != null) {
+            this.scheduledRun.cancel(false);
+            this.scheduledRun = null;
+        }
+        if (this.fusionFrequency <= 0) {
+            logger.error("Fusion frequency is not set. fusion runs are not scheduled for " + this.pipelineName);
+            return;
+        }
+        FusionSchedulerService.ScheduleMode mode =
+                FusionSchedulerService.ScheduleMode.fromString(this.fusionConfig.getScheduleMode());
+        this.scheduledRun = FusionSchedulerService.getInstance()
+                .schedule(this.scheduler, initialDelay, this.fusionFrequency, TimeUnit.MILLISECONDS, mode);
     }
 
     public void setFusionFrequency(long fusionFrequency) {
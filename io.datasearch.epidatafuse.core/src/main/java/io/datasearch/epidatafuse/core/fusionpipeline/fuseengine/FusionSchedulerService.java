@@ -0,0 +1,60 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
+
+import java.util.Locale;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fusion scheduler shared by all the pipelines of the server.
+ * The thread count is read from the epidatafuse.fusion.scheduler.threads system property at startup.
+ */
+public class FusionSchedulerService {
+
+    public static final String THREAD_COUNT_PROPERTY = "epidatafuse.fusion.scheduler.threads";
+    private static final int DEFAULT_THREAD_COUNT = 2;
+    private static final FusionSchedulerService INSTANCE = new FusionSchedulerService(
+            Integer.getInteger(THREAD_COUNT_PROPERTY, DEFAULT_THREAD_COUNT));
+
+    /**
+     * Fixed delay waits for the given period after a run completes, fixed rate starts runs every period.
+     */
+    public enum ScheduleMode {
+        FIXED_DELAY,
+        FIXED_RATE;
+
+        public static ScheduleMode fromString(String mode) {
+            if (mode != null && "fixed_rate".equals(mode.trim().toLowerCase(Locale.ENGLISH))) {
+                return FIXED_RATE;
+            }
+            return FIXED_DELAY;
+        }
+    }
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private FusionSchedulerService(int threadCount) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, threadCount), runnable -> {
+            Thread thread = new Thread(runnable, "fusion-scheduler-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static FusionSchedulerService getInstance() {
+        return INSTANCE;
+    }
+
+    public ScheduledFuture<?> schedule(Scheduler scheduler, long initialDelay, long period, TimeUnit unit,
+                                       ScheduleMode mode) {
+        scheduler.onScheduled(mode, initialDelay, period, unit);
+        if (mode == ScheduleMode.FIXED_RATE) {
+            return this.executor.scheduleAtFixedRate(scheduler, initialDelay, period, unit);
+        } else {
+            return this.executor.scheduleWithFixedDelay(scheduler, initialDelay, period, unit);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
 
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.PipelineDataStore;
+import io.datasearch.epidatafuse.core.fusionpipeline.metrics.FusionMetrics;
+import io.datasearch.epidatafuse.core.fusionpipeline.metrics.Histogram;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregateInvoker;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregationUtil;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.configuration.AggregationConfig;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleGeometryCache;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleValueIndex;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleWindowState;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.SpatioTemporallyAggregatedCollection;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.TemporallyAggregatedCollection;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.GranularityMap;
@@ -19,10 +24,7 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.type.AttributeTypeImpl;
-import org.geotools.filter.text.cql2.CQL;
 import org.geotools.filter.text.ecql.ECQL;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.Point;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.Filter;
@@ -35,14 +37,21 @@ import java.text.SimpleDateFormat;
 
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * For granularity conversion.
@@ -50,26 +59,76 @@ import java.util.Locale;
 public class GranularityConvertor {
     private static final Logger logger = LoggerFactory.getLogger(GranularityConvertor.class);
     private static final String INDEX_COLUMN_KEY = "spatialGranule";
+    private static final int CHUNKS_PER_WORKER = 4;
 
     private PipelineDataStore pipelineDataStore;
     private DataStore dataStore;
     private String initialTime;
     private long currentAndInitTimeDiff;
+    //replaced from the configuration thread while ticks are running
+    private volatile ForkJoinPool aggregationPool;
+    private IncrementalTemporalAggregator incrementalAggregator = new IncrementalTemporalAggregator();
+    private volatile boolean incrementalTemporalAggregation = false;
+    private FusionMetrics metrics;
 
-    public GranularityConvertor(PipelineDataStore pipelineDataStore) {
+    public GranularityConvertor(PipelineDataStore pipelineDataStore, FusionMetrics metrics) {
         this.pipelineDataStore = pipelineDataStore;
+        this.metrics = metrics;
         this.dataStore = pipelineDataStore.getDataStore();
     }
 
+    /**
+     * Read temporal aggregates from window state kept up to date on ingestion instead of scanning the window.
+     * The window state only listens to ingestion while this is enabled, so ingested rows are not copied otherwise.
+     */
+    public synchronized void setIncrementalTemporalAggregation(boolean incrementalTemporalAggregation) {
+        if (incrementalTemporalAggregation == this.incrementalTemporalAggregation) {
+            return;
+        }
+        if (incrementalTemporalAggregation) {
+            this.pipelineDataStore.addIngestListener(this.incrementalAggregator);
+        } else {
+            this.pipelineDataStore.removeIngestListener(this.incrementalAggregator);
+            this.incrementalAggregator.clear();
+        }
+        this.incrementalTemporalAggregation = incrementalTemporalAggregation;
+    }
+
+    /**
+     * Set the pool used to aggregate target granules in parallel. Null aggregates sequentially.
+     */
+    public void setAggregationPool(ForkJoinPool aggregationPool) {
+        this.aggregationPool = aggregationPool;
+    }
+
     public SpatioTemporallyAggregatedCollection aggregate(GranularityMap granularityMap, AggregationConfig config)
             throws IOException {
 
 
         String baseSpatialGranularity = granularityMap.getBaseSpatialGranularity();
         String targetSpatialGranularity = granularityMap.getTargetSpatialGranularity();
+        String featureTypeName = config.getFeatureTypeName();
 
+        long loadingStart = System.nanoTime();
         SimpleFeatureCollection baseSpatialGranuleSet = this.getFeatures(baseSpatialGranularity);
-        SimpleFeatureCollection targetSpatialGranuleSet = this.getFeatures(targetSpatialGranularity);
+        SimpleFeatureCollection targetSpatialGranuleSet;
+        if (targetSpatialGranularity.equals(baseSpatialGranularity)) {
+            targetSpatialGranuleSet = baseSpatialGranuleSet;
+        } else {
+            targetSpatialGranuleSet = this.getFeatures(targetSpatialGranularity);
+            this.metrics.features(featureTypeName, FusionMetrics.GRANULE_LOADING)
+                    .add(targetSpatialGranuleSet.size());
+        }
+        this.metrics.features(featureTypeName, FusionMetrics.GRANULE_LOADING).add(baseSpatialGranuleSet.size());
+        this.metrics.recordStage(featureTypeName, FusionMetrics.GRANULE_LOADING, loadingStart);
+
+        //granule geometries are loaded once per tick so that weight calculations are in-memory lookups
+        GranuleGeometryCache baseGranuleCache = new GranuleGeometryCache(baseSpatialGranularity,
+                baseSpatialGranuleSet,
+                this.pipelineDataStore.getGranularitySchema(baseSpatialGranularity).getUuidAttributeName());
+        GranuleGeometryCache targetGranuleCache = new GranuleGeometryCache(targetSpatialGranularity,
+                targetSpatialGranuleSet,
+                this.pipelineDataStore.getGranularitySchema(targetSpatialGranularity).getUuidAttributeName());
 
         //features are taken directly from the database without temporal aggregation
         //SimpleFeatureCollection featureSet = this.getFeatures(featureTypeName);
@@ -85,7 +144,8 @@ public class GranularityConvertor {
 
         SpatioTemporallyAggregatedCollection spatioTemporallyAggregatedCollection =
                 this.spatialAggregate(targetSpatialGranuleSet, temporallyAggregatedFeatures, indexCol, aggregateOn,
-                        granularityMap, isASpatialInterpolation, aggregationMethod);
+                        granularityMap, isASpatialInterpolation, aggregationMethod, baseGranuleCache,
+                        targetGranuleCache);
 
         return spatioTemporallyAggregatedCollection;
     }
@@ -93,6 +153,18 @@ public class GranularityConvertor {
     public TemporallyAggregatedCollection temporalAggregate(GranularityMap granularityMap,
                                                             AggregationConfig config,
                                                             SimpleFeatureCollection baseSpatialGranuleSet) {
+        long startNanos = System.nanoTime();
+        TemporallyAggregatedCollection temporallyAggregatedCollection =
+                this.temporalAggregateWindow(granularityMap, config, baseSpatialGranuleSet);
+        this.metrics.recordStage(config.getFeatureTypeName(), FusionMetrics.TEMPORAL_AGGREGATION, startNanos);
+        this.metrics.features(config.getFeatureTypeName(), FusionMetrics.TEMPORAL_AGGREGATION)
+                .add(temporallyAggregatedCollection.getFeatureCollection().size());
+        return temporallyAggregatedCollection;
+    }
+
+    private TemporallyAggregatedCollection temporalAggregateWindow(GranularityMap granularityMap,
+                                                                   AggregationConfig config,
+                                                                   SimpleFeatureCollection baseSpatialGranuleSet) {
 
         TemporalGranularityMap temporalGranularityMap = granularityMap.getTemporalGranularityMap();
 
@@ -113,9 +185,6 @@ public class GranularityConvertor {
         long relationValue = temporalGranularityMap.getRelationValue();
         double interpolationDivideFactor = (double) temporalGranularityMap.getInterpolationDivideFactor();
 
-        HashMap<String, Double> customAttributes = new HashMap<String, Double>();
-        customAttributes.put("INTERPOLATION_DIVIDE_FACTOR", interpolationDivideFactor);
-
         LocalDateTime currentTimestamp = LocalDateTime.now();
         LocalDateTime endTimestamp = currentTimestamp.minusMinutes(this.currentAndInitTimeDiff);
         LocalDateTime startingTimestamp = endTimestamp.minusHours(relationValue);
@@ -123,6 +192,15 @@ public class GranularityConvertor {
         logger.info(endTimestamp.toString());
         logger.info(startingTimestamp.toString());
 
+        if (this.incrementalTemporalAggregation && IncrementalTemporalAggregator.isSupportedMethod(aggregationMethod)) {
+            TemporallyAggregatedCollection incrementallyAggregated = this.incrementalTemporalAggregate(config,
+                    baseSpatialGranuleSet, baseSpatialGranularity, baseSpatialUuid, targetTemporalGranularity,
+                    interpolationDivideFactor, startingTimestamp, endTimestamp);
+            if (incrementallyAggregated != null) {
+                return incrementallyAggregated;
+            }
+        }
+
         SimpleFeatureIterator iterator = baseSpatialGranuleSet.features();
 
         SimpleFeatureType featureType = this.getFeatureType(featureTypeName);
@@ -133,6 +211,10 @@ public class GranularityConvertor {
                 getAllFeaturesBetweenDates(featureTypeName, startingTimestamp.toString(),
                         endTimestamp.toString(), baseSpatialUuid);
 
+        //buffers are reused across granules, a later observation with the same dtg replaces the earlier one
+        double[] valueBuffer = new double[16];
+        HashMap<Object, Integer> dtgPositions = new HashMap<Object, Integer>();
+
         while (iterator.hasNext()) {
 
             SimpleFeature baseSpatialGranule = iterator.next();
@@ -153,118 +235,224 @@ public class GranularityConvertor {
 
             if (featuresToAggregate != null && featuresToAggregate.size() > 0) {
 
-                HashMap<String, Double> valueSet = new HashMap<String, Double>();
                 SimpleFeature aggregatedFeature = null;
+                int length = 0;
+                dtgPositions.clear();
+                if (valueBuffer.length < featuresToAggregate.size()) {
+                    valueBuffer = new double[featuresToAggregate.size()];
+                }
 
                 for (SimpleFeature feature : featuresToAggregate) {
 
-                    String dtg = feature.getAttribute("dtg").toString();
+                    Object dtg = feature.getAttribute("dtg");
                     aggregatedFeature = feature;
                     try {
-                        Double value = Double.parseDouble(feature.getAttribute(aggregateOn).toString());
-                        valueSet.put(dtg, value);
+                        double value = Double.parseDouble(feature.getAttribute(aggregateOn).toString());
+                        Integer position = dtgPositions.get(dtg);
+                        if (position == null) {
+                            position = length++;
+                            dtgPositions.put(dtg, position);
+                        }
+                        valueBuffer[position] = value;
                     } catch (Throwable e) {
                         logger.error(e.getMessage());
                         continue;
                     }
                 }
 
-                Double aggregatedValue = this.calculateFinalValue(valueSet, isATemporalInterpolation,
-                        aggregationMethod, customAttributes);
+                double aggregatedValue = this.calculateFinalValue(valueBuffer, null, length,
+                        isATemporalInterpolation, aggregationMethod, interpolationDivideFactor);
 
                 aggregatedFeature.setAttribute(aggregateOn, aggregatedValue);
-                logger.info(aggregatedFeature.toString());
+                if (logger.isDebugEnabled()) {
+                    logger.debug(aggregatedFeature.toString());
+                }
                 aggregatedFeatures.add(aggregatedFeature);
             }
         }
 
         SimpleFeatureCollection aggregatedFeatureCollection = DataUtilities.collection(aggregatedFeatures);
 
+        //indexed once here so that spatial aggregation resolves base values by direct lookups
+        GranuleValueIndex valueIndex =
+                new GranuleValueIndex(aggregatedFeatureCollection, baseSpatialUuid, aggregateOn);
+
         TemporallyAggregatedCollection temporallyAggregatedCollection =
                 new TemporallyAggregatedCollection(
                         featureType,
                         aggregatedFeatureCollection,
                         baseSpatialGranularity,
                         targetTemporalGranularity,
-                        endTimestamp.toString()
+                        endTimestamp.toString(),
+                        valueIndex
                 );
 
         return temporallyAggregatedCollection;
     }
 
+    private TemporallyAggregatedCollection incrementalTemporalAggregate(AggregationConfig config,
+                                                                       SimpleFeatureCollection baseSpatialGranuleSet,
+                                                                       String baseSpatialGranularity,
+                                                                       String baseSpatialUuid,
+                                                                       String targetTemporalGranularity,
+                                                                       double interpolationDivideFactor,
+                                                                       LocalDateTime startingTimestamp,
+                                                                       LocalDateTime endTimestamp) {
+        String featureTypeName = config.getFeatureTypeName();
+        String aggregateOn = config.getAggregationOn();
+        String aggregationMethod = config.getTemporalAggregationMethod(aggregateOn);
+        Boolean isATemporalInterpolation = config.isATemporalInterpolation();
+
+        IncrementalTemporalAggregator.FeatureWindowState windowState =
+                this.incrementalAggregator.getState(featureTypeName, baseSpatialUuid, aggregateOn);
+        if (windowState == null) {
+            //the state tracks ingestion from here on, the datastore scan covers what was ingested before
+            windowState = this.incrementalAggregator.createState(featureTypeName, baseSpatialUuid, aggregateOn);
+            if (!this.seedWindowState(windowState, featureTypeName, startingTimestamp.toString())) {
+                this.incrementalAggregator.removeState(featureTypeName);
+                return null;
+            }
+        }
+
+        //timestamps without a zone are taken as UTC like the ingested dates
+        windowState.advance(startingTimestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                endTimestamp.toInstant(ZoneOffset.UTC).toEpochMilli());
+        if (!windowState.isComplete()) {
+            //observations too far ahead of the window were dropped, the state is seeded again on the next tick
+            this.incrementalAggregator.removeState(featureTypeName);
+            return null;
+        }
+
+        SimpleFeatureType featureType = this.getFeatureType(featureTypeName);
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+        ArrayList<SimpleFeature> aggregatedFeatures = new ArrayList<SimpleFeature>();
+
+        SimpleFeatureIterator iterator = baseSpatialGranuleSet.features();
+        try {
+            while (iterator.hasNext()) {
+                String baseSpatialGranuleID = iterator.next().getAttribute(baseSpatialUuid).toString();
+                GranuleWindowState granuleState = windowState.getGranuleState(baseSpatialGranuleID);
+                if (granuleState == null || granuleState.getCount() == 0) {
+                    continue;
+                }
+                double aggregatedValue = isATemporalInterpolation ? -0.002 :
+                        IncrementalTemporalAggregator.aggregate(granuleState, aggregationMethod,
+                                interpolationDivideFactor);
+
+                featureBuilder.set(baseSpatialUuid, baseSpatialGranuleID);
+                featureBuilder.set(aggregateOn, aggregatedValue);
+                featureBuilder.set("dtg", new Date(granuleState.getLastTimestamp()));
+                aggregatedFeatures.add(featureBuilder.buildFeature(null));
+            }
+        } finally {
+            iterator.close();
+        }
+
+        SimpleFeatureCollection aggregatedFeatureCollection = DataUtilities.collection(aggregatedFeatures);
+        GranuleValueIndex valueIndex =
+                new GranuleValueIndex(aggregatedFeatureCollection, baseSpatialUuid, aggregateOn);
+
+        return new TemporallyAggregatedCollection(
+                featureType,
+                aggregatedFeatureCollection,
+                baseSpatialGranularity,
+                targetTemporalGranularity,
+                endTimestamp.toString(),
+                valueIndex
+        );
+    }
+
+    //load the features observed after the window start into a newly created window state
+    private boolean seedWindowState(IncrementalTemporalAggregator.FeatureWindowState windowState,
+                                 String typeName, String startingDate) {
+        try {
+            Filter filter = ECQL.toFilter("dtg AFTER " + startingDate);
+            Query query = new Query(typeName, filter);
+            SimpleFeatureIterator it = this.dataStore.getFeatureSource(typeName).getFeatures(query).features();
+            try {
+                while (it.hasNext()) {
+                    windowState.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+            return true;
+        } catch (Throwable e) {
+            logger.error(e.getMessage());
+            return false;
+        }
+    }
+
     public SpatioTemporallyAggregatedCollection spatialAggregate(
             SimpleFeatureCollection targetGranuleSet,
             TemporallyAggregatedCollection temporallyAggregatedfeatureSet,
             String indexCol, String aggregateOn,
             GranularityMap granularityMap,
             Boolean isASpatialInterpolation,
-            String aggregationMethod
+            String aggregationMethod,
+            GranuleGeometryCache baseGranuleCache,
+            GranuleGeometryCache targetGranuleCache
     ) {
+        long startNanos = System.nanoTime();
+        String featureTypeName = granularityMap.getFeatureTypeName();
 
         SimpleFeatureType featureType = temporallyAggregatedfeatureSet.getFeatureType();
         SimpleFeatureCollection featureSet = temporallyAggregatedfeatureSet.getFeatureCollection();
         String dtg = temporallyAggregatedfeatureSet.getDtg();
         SpatialGranularityRelationMap spatialGranularityMap = granularityMap.getSpatialGranularityRelationMap();
 
-
-        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
-        ArrayList<SimpleFeature> aggregatedFeatures = new ArrayList<SimpleFeature>();
-
-        SimpleFeatureIterator iterator = targetGranuleSet.features();
-
-        String formatedDtgString = dtg;
-
-
         String targetSpatialGranularity = granularityMap.getTargetSpatialGranularity();
         String baseSpatialGranularity = granularityMap.getBaseSpatialGranularity();
         String targetUUID =
                 this.pipelineDataStore.getGranularitySchema(targetSpatialGranularity).getUuidAttributeName();
-//        String baseUUID = this.pipelineDataStore.getGranularitySchema(baseSpatialGranularity).getUuidAttributeName();
-
-        while (iterator.hasNext()) {
-            SimpleFeature feature = iterator.next();
-            String targetGranule = feature.getAttribute(targetUUID).toString();
-
-            //corresponding granule ids for the target according to granularityMap
-            ArrayList<String> baseGranuleIds = spatialGranularityMap.getBaseGranuleIds(targetGranule);
 
-            //get the observed or recorded values of each corresponding base granule
-            HashMap<String, Double> valueSet =
-                    this.getAggregatingAttributes(baseSpatialGranularity, baseGranuleIds, featureSet, aggregateOn);
-
-            //get the required custom attributes such as weighting factors for aggregation
-            HashMap<String, Double> customAttributeSet =
-                    this.getCustomAttributes(granularityMap.getBaseSpatialGranularity(), baseGranuleIds,
-                            granularityMap.getTargetSpatialGranularity(), targetGranule, aggregationMethod);
-
-            Double aggregatedValue =
-                    this.calculateFinalValue(valueSet, isASpatialInterpolation, aggregationMethod, customAttributeSet);
-
-            String info = (targetGranule + " " + aggregatedValue.toString() + " " + dtg);
-            logger.info(info);
-
-            SimpleFeature aggregatedFeature = featureBuilder.buildFeature(targetGranule);
-            aggregatedFeature.setAttribute(aggregateOn, aggregatedValue);
-
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
-            DateFormat dateStringFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+        GranuleValueIndex valueIndex = temporallyAggregatedfeatureSet.getValueIndex();
+        if (valueIndex == null) {
+            String baseUUID =
+                    this.pipelineDataStore.getGranularitySchema(baseSpatialGranularity).getUuidAttributeName();
+            valueIndex = new GranuleValueIndex(featureSet, baseUUID, aggregateOn);
+        }
 
-            Date date;
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
+        DateFormat dateStringFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+        Date date;
+        String formatedDtgString;
+        try {
+            date = format.parse(dtg);
+            formatedDtgString = dateStringFormat.format(date);
+        } catch (Throwable e) {
+            logger.error(e.getMessage());
+            date = null;
+            formatedDtgString = null;
+        }
 
-            try {
-                date = format.parse(dtg);
-                formatedDtgString = dateStringFormat.format(date);
-            } catch (Throwable e) {
-                logger.error(e.getMessage());
-                date = null;
-                formatedDtgString = null;
+        ArrayList<String> targetGranules = new ArrayList<String>();
+        SimpleFeatureIterator iterator = targetGranuleSet.features();
+        try {
+            while (iterator.hasNext()) {
+                targetGranules.add(iterator.next().getAttribute(targetUUID).toString());
             }
-            aggregatedFeature.setAttribute("dtg", date);
-//            logger.info(aggregatedFeature.toString());
+        } finally {
+            iterator.close();
+        }
+
+        //each target granule is written to its own slot so the output order does not depend on scheduling
+        SimpleFeature[] aggregatedFeatureSlots = new SimpleFeature[targetGranules.size()];
+        SpatialAggregationTask task = new SpatialAggregationTask(featureType, valueIndex, targetGranules,
+                aggregatedFeatureSlots, aggregateOn, spatialGranularityMap,
+                isASpatialInterpolation, aggregationMethod, baseGranuleCache, targetGranuleCache, date, dtg,
+                this.metrics.stageDuration(featureTypeName, FusionMetrics.CUSTOM_ATTRIBUTES));
 
-            aggregatedFeatures.add(aggregatedFeature);
+        ForkJoinPool pool = this.aggregationPool;
+        if (pool != null && targetGranules.size() > 1) {
+            this.runInParallel(pool, task, targetGranules.size());
+        } else {
+            task.aggregateRange(0, targetGranules.size());
         }
 
+        ArrayList<SimpleFeature> aggregatedFeatures =
+                new ArrayList<SimpleFeature>(Arrays.asList(aggregatedFeatureSlots));
+
         ArrayList<String> attributeList = new ArrayList<String>();
         attributeList.add(indexCol);
         attributeList.add(aggregateOn);
@@ -285,189 +473,188 @@ public class GranularityConvertor {
                         attributeList,
                         aggregatedAttributeList
                 );
+        this.metrics.recordStage(featureTypeName, FusionMetrics.SPATIAL_AGGREGATION, startNanos);
+        this.metrics.features(featureTypeName, FusionMetrics.SPATIAL_AGGREGATION).add(targetGranules.size());
         return spatioTemporallyAggregatedCollection;
     }
 
 
-    //given the corresponding base granule ids and feature set get the corresponding value set.
-    public HashMap<String, Double> getAggregatingAttributes(String granularity, ArrayList<String> granuleIds,
-                                                            SimpleFeatureCollection featureCollection,
-                                                            String attributeCol) {
-
-
-        String uuid = this.pipelineDataStore.getGranularitySchema(granularity).getUuidAttributeName();
-
-        HashMap<String, Double> valueSet = new HashMap<String, Double>();
-        HashMap<String, SimpleFeature> featureSet = new HashMap<String, SimpleFeature>();
-
-        SimpleFeatureIterator iterator = featureCollection.features();
-        while (iterator.hasNext()) {
-            SimpleFeature feature = iterator.next();
-            featureSet.put(feature.getAttribute(uuid).toString(), feature);
+    private void runInParallel(ForkJoinPool pool, SpatialAggregationTask task, int targetCount) {
+        int chunkCount = Math.min(targetCount, pool.getParallelism() * CHUNKS_PER_WORKER);
+        int chunkSize = (targetCount + chunkCount - 1) / chunkCount;
+        List<Callable<Void>> chunks = new ArrayList<Callable<Void>>();
+        for (int from = 0; from < targetCount; from += chunkSize) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(targetCount, from + chunkSize);
+            chunks.add(() -> {
+                task.aggregateRange(chunkStart, chunkEnd);
+                return null;
+            });
         }
-
-        granuleIds.forEach((granule) -> {
-            try {
-                // check whether granule is in the featureset
-                if (featureSet.get(granule) != null) {
-                    SimpleFeature feature = featureSet.get(granule);
-                    String valueString = feature.getAttribute(attributeCol).toString();
-                    Double value = Double.parseDouble(valueString);
-                    valueSet.put(granule, value);
-                }
-            } catch (Exception e) {
-                valueSet.put(granule, null);
+        try {
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
             }
-        });
-
-        iterator.close();
-        return valueSet;
+        } catch (RejectedExecutionException e) {
+            //the pool was retired during the tick, slots are overwritten so the range is aggregated again
+            logger.warn("Aggregation pool is shut down. aggregating sequentially");
+            task.aggregateRange(0, targetCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Spatial aggregation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Spatial aggregation failed", e.getCause());
+        }
     }
 
-    private HashMap<String, Double> getCustomAttributes(String baseGranularity, ArrayList<String> baseGranuleIds,
-                                                        String targetGranularity, String targetGranule,
-                                                        String aggregationMethod) {
-
-        HashMap<String, Double> customAttributes = new HashMap<String, Double>();
-        ArrayList<SimpleFeature> baseGranules = new ArrayList<SimpleFeature>();
-        SimpleFeature targetGranuleFeature = null;
-
-        String baseGranularityIndexCol =
-                this.pipelineDataStore.getGranularitySchema(baseGranularity).getUuidAttributeName();
-        String targetGranularityIndexCol =
-                this.pipelineDataStore.getGranularitySchema(targetGranularity).getUuidAttributeName();
-
-//        String baseGranularityIndexCol = getFeatureIndexColName(baseGranularity);
-//        String targetGranularityIndexCol = getFeatureIndexColName(targetGranularity);
-
-        try {
-
-            for (String baseGranuleId : baseGranuleIds) {
-
-                Filter filter = CQL.toFilter(baseGranularityIndexCol + " = '" + baseGranuleId + "'");
-                Query query = new Query(baseGranularity, filter);
-
-                FeatureReader<SimpleFeatureType, SimpleFeature> reader =
-                        this.dataStore.getFeatureReader(query, Transaction.AUTO_COMMIT);
+    /**
+     * Aggregates a range of target granules into their slots of the output array.
+     */
+    private class SpatialAggregationTask {
+        private SimpleFeatureType featureType;
+        private GranuleValueIndex valueIndex;
+        private List<String> targetGranules;
+        private SimpleFeature[] aggregatedFeatureSlots;
+        private String aggregateOn;
+        private SpatialGranularityRelationMap spatialGranularityMap;
+        private Boolean isASpatialInterpolation;
+        private String aggregationMethod;
+        private GranuleGeometryCache baseGranuleCache;
+        private GranuleGeometryCache targetGranuleCache;
+        private Date date;
+        private String dtg;
+        private Histogram customAttributeDuration;
+
+        SpatialAggregationTask(SimpleFeatureType featureType, GranuleValueIndex valueIndex,
+                               List<String> targetGranules, SimpleFeature[] aggregatedFeatureSlots,
+                               String aggregateOn, SpatialGranularityRelationMap spatialGranularityMap,
+                               Boolean isASpatialInterpolation, String aggregationMethod,
+                               GranuleGeometryCache baseGranuleCache, GranuleGeometryCache targetGranuleCache,
+                               Date date, String dtg, Histogram customAttributeDuration) {
+            this.featureType = featureType;
+            this.valueIndex = valueIndex;
+            this.targetGranules = targetGranules;
+            this.aggregatedFeatureSlots = aggregatedFeatureSlots;
+            this.aggregateOn = aggregateOn;
+            this.spatialGranularityMap = spatialGranularityMap;
+            this.isASpatialInterpolation = isASpatialInterpolation;
+            this.aggregationMethod = aggregationMethod;
+            this.baseGranuleCache = baseGranuleCache;
+            this.targetGranuleCache = targetGranuleCache;
+            this.date = date;
+            this.dtg = dtg;
+            this.customAttributeDuration = customAttributeDuration;
+        }
 
+        void aggregateRange(int from, int to) {
+            //feature builders are not thread safe, so every range gets its own
+            SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+            boolean isWeighted = SpatialWeightCalculator.isWeightedMethod(aggregationMethod);
+            double[] values = new double[16];
+            double[] weights = new double[16];
+            for (int i = from; i < to; i++) {
+                String targetGranule = targetGranules.get(i);
+
+                //corresponding granule ids for the target according to granularityMap
+                ArrayList<String> baseGranuleIds = spatialGranularityMap.getBaseGranuleIds(targetGranule);
+                int length = baseGranuleIds.size();
+                if (values.length < length) {
+                    values = new double[length];
+                    weights = new double[length];
+                }
 
-                while (reader.hasNext()) {
-                    SimpleFeature sf = reader.next();
-                    baseGranules.add(sf);
+                //get the observed or recorded values of each corresponding base granule
+                getAggregatingAttributes(baseGranuleIds, valueIndex, values);
+
+                //get the required custom attributes such as weighting factors for aggregation
+                if (isWeighted) {
+                    long customAttributeStart = System.nanoTime();
+                    HashMap<String, Double> customAttributeSet =
+                            getCustomAttributes(spatialGranularityMap, baseGranuleCache, baseGranuleIds,
+                                    targetGranuleCache, targetGranule, aggregationMethod);
+                    customAttributeDuration.observeNanos(System.nanoTime() - customAttributeStart);
+                    for (int j = 0; j < length; j++) {
+                        Double weight = customAttributeSet.get(baseGranuleIds.get(j));
+                        weights[j] = weight != null ? weight : Double.NaN;
+                    }
                 }
-            }
 
-            Filter filter = CQL.toFilter(targetGranularityIndexCol + " = '" + targetGranule + "'");
-            Query query = new Query(targetGranularity, filter);
+                double aggregatedValue = calculateFinalValue(values, weights, length, isASpatialInterpolation,
+                        aggregationMethod, Double.NaN);
 
-            FeatureReader<SimpleFeatureType, SimpleFeature> reader =
-                    this.dataStore.getFeatureReader(query, Transaction.AUTO_COMMIT);
+                if (logger.isDebugEnabled()) {
+                    logger.debug(targetGranule + " " + aggregatedValue + " " + dtg);
+                }
 
-            while (reader.hasNext()) {
-                SimpleFeature sf = reader.next();
-                targetGranuleFeature = sf;
+                SimpleFeature aggregatedFeature = featureBuilder.buildFeature(targetGranule);
+                aggregatedFeature.setAttribute(aggregateOn, aggregatedValue);
+                aggregatedFeature.setAttribute("dtg", date);
+                aggregatedFeatureSlots[i] = aggregatedFeature;
             }
-
-            reader.close();
-
-        } catch (Exception e) {
-            logger.error(e.getMessage());
         }
-//        logger.info(targetGranuleFeature.toString());
-//        logger.info(baseGranules.toString());
-
-        switch (aggregationMethod) {
-            case "InverseDistance":
-
-                //caluculate distance from the target granule to each base granules.
-                for (SimpleFeature baseGranule : baseGranules) {
-
-                    Double distance = this.calculateDistance(baseGranule, targetGranuleFeature);
-//                   String info = targetGranuleFeature.getID() + "-" + baseGranule.getID() + ":" + distance.toString();
-
-                    customAttributes.put(baseGranule.getAttribute(baseGranularityIndexCol).toString(), distance);
-                }
-                break;
-
-            case "AreaBasedAverage":
-                for (SimpleFeature baseGranule : baseGranules) {
-                    Double intersectRatio = this.calculateIntersectRatio(targetGranuleFeature, baseGranule);
-                    customAttributes.put(baseGranule.getAttribute(baseGranularityIndexCol).toString(), intersectRatio);
-                }
-                break;
-            default:
-                break;
+    }
 
+    //fill the values of the given base granules in order, NaN for granules without a value.
+    public void getAggregatingAttributes(ArrayList<String> granuleIds, GranuleValueIndex valueIndex,
+                                         double[] values) {
+        for (int i = 0; i < granuleIds.size(); i++) {
+            int position = valueIndex.indexOf(granuleIds.get(i));
+            values[i] = position >= 0 ? valueIndex.getValue(position) : Double.NaN;
         }
-
-        return customAttributes;
     }
 
-    private Double calculateDistance(SimpleFeature granule1, SimpleFeature granule2) {
-//        GeodeticCalculator geodeticCalculator = new GeodeticCalculator();
-        //geodeticCalculator.setStartingPosition();
-        //Pointorg.locationtech.geomesa.process.analytic.Point2PointProcess()
-
-        Geometry g1 = (Geometry) granule1.getDefaultGeometry();
-        Geometry g2 = (Geometry) granule2.getDefaultGeometry();
-
-        Point gc1 = g1.getCentroid();
-        Point gc2 = g2.getCentroid();
-        logger.info(g1.getCentroid().toString());
-
+    private HashMap<String, Double> getCustomAttributes(SpatialGranularityRelationMap spatialGranularityMap,
+                                                        GranuleGeometryCache baseGranuleCache,
+                                                        ArrayList<String> baseGranuleIds,
+                                                        GranuleGeometryCache targetGranuleCache,
+                                                        String targetGranule, String aggregationMethod) {
 
-        Double distance = gc1.distance(gc2);
-
-        return distance;
-    }
+        if (!SpatialWeightCalculator.isWeightedMethod(aggregationMethod)) {
+            return new HashMap<String, Double>();
+        }
 
-    private Double calculateIntersectRatio(SimpleFeature granule1, SimpleFeature granule2) {
-        Geometry g1 = (Geometry) granule1.getDefaultGeometry();
-        Geometry g2 = (Geometry) granule2.getDefaultGeometry();
-        double areaRatio = 0.0;
-        try {
-            Geometry intersect = g1.intersection(g2);
-            areaRatio = intersect.getArea() / g2.getArea();
-            //logger.info((100 * areaRatio) + " %");
-        } catch (Throwable e) {
-            logger.error(e.getMessage());
-            areaRatio = 0.0;
+        //weights are computed while mapping granularities and only recomputed after a granularity is re-ingested
+        long generation = spatialGranularityMap.getWeightGeneration();
+        HashMap<String, Double> customAttributes = spatialGranularityMap.getWeights(targetGranule, aggregationMethod);
+        if (customAttributes == null) {
+            customAttributes = SpatialWeightCalculator.calculateWeights(aggregationMethod,
+                    targetGranuleCache.getGeometry(targetGranule), baseGranuleIds, baseGranuleCache);
+            spatialGranularityMap.addWeights(targetGranule, aggregationMethod, generation, customAttributes);
         }
-        return areaRatio;
+        return customAttributes;
     }
 
-
-    private Double calculateFinalValue(HashMap<String, Double> valueSet, Boolean isAnAggregate,
-                                       String aggregationMethod, HashMap<String, Double> customAttributes) {
-        Double finalValue;
+    private double calculateFinalValue(double[] values, double[] weights, int length, Boolean isAnAggregate,
+                                       String aggregationMethod, double divideFactor) {
+        double finalValue;
 
         //if an aggregation process. there are two types, aggregation vs interpolation.
         if (!isAnAggregate) {
             switch (aggregationMethod) {
                 case AggregationUtil.MEAN:
-                    finalValue = AggregateInvoker.mean(valueSet);
+                    finalValue = AggregateInvoker.mean(values, length);
                     break;
                 case AggregationUtil.SUM:
-                    finalValue = AggregateInvoker.sum(valueSet);
+                    finalValue = AggregateInvoker.sum(values, length);
                     break;
                 case AggregationUtil.MAX:
-                    finalValue = AggregateInvoker.max(valueSet);
+                    finalValue = AggregateInvoker.max(values, length);
                     break;
                 case AggregationUtil.MIN:
-                    finalValue = AggregateInvoker.min(valueSet);
+                    finalValue = AggregateInvoker.min(values, length);
                     break;
                 case AggregationUtil.INVERSE_DISTANCE:
-                    finalValue = AggregateInvoker.inverseDistance(valueSet, customAttributes);
+                    finalValue = AggregateInvoker.inverseDistance(values, weights, length);
                     break;
                 case AggregationUtil.AREA_BASED_AVERAGE:
-                    finalValue = AggregateInvoker.areaBasedAverage(valueSet, customAttributes);
+                    finalValue = AggregateInvoker.areaBasedAverage(values, weights, length);
                     break;
                 case AggregationUtil.EQUALLY_DISTRIBUTE:
-                    finalValue = AggregateInvoker.equallyDistribute(valueSet, customAttributes);
+                    finalValue = AggregateInvoker.equallyDistribute(values, length, divideFactor);
                     break;
                 case AggregationUtil.BRING_FORWARD:
                 case "None":
-                    finalValue = AggregateInvoker.defaultAggregate(valueSet);
+                    finalValue = AggregateInvoker.defaultAggregate(values, length);
                     break;
                 default:
                     finalValue = -0.4;
@@ -579,6 +766,8 @@ public class GranularityConvertor {
     public HashMap<String, ArrayList<SimpleFeature>> getAllFeaturesBetweenDates(String typeName, String startingDate,
                                                                                 String endDate,
                                                                                 String uuid) {
+        long startNanos = System.nanoTime();
+        int featureCount = 0;
         try {
 
             Filter filter = ECQL.toFilter("dtg DURING " + startingDate + "/" + endDate);
@@ -592,6 +781,7 @@ public class GranularityConvertor {
 
             while (it.hasNext()) {
                 SimpleFeature feature = it.next();
+                featureCount++;
                 String featureUuid = feature.getAttribute(uuid).toString();
                 featureUuid = featureUuid.toLowerCase(Locale.getDefault());
 
@@ -607,8 +797,12 @@ public class GranularityConvertor {
             return spatiallyIndexedHashMap;
 
         } catch (Throwable e) {
+            this.metrics.errors(typeName, FusionMetrics.WINDOW_SCAN).increment();
             logger.error(e.getMessage());
             return null;
+        } finally {
+            this.metrics.recordStage(typeName, FusionMetrics.WINDOW_SCAN, startNanos);
+            this.metrics.features(typeName, FusionMetrics.WINDOW_SCAN).add(featureCount);
         }
     }
 
@@ -635,6 +829,8 @@ public class GranularityConvertor {
     }
 
     public void setFusionInitialTimestamp(String initialTimestampString) {
+        //the window moves to a new position, window state is rebuilt on the next tick
+        this.incrementalAggregator.clear();
         this.initialTime = initialTimestampString;
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
         LocalDateTime currentTimestamp = LocalDateTime.now();
@@ -3,6 +3,7 @@ package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.PipelineDataStore;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.query.QueryManager;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.configuration.GranularityRelationConfig;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleGeometryCache;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod.ContainMapper;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod.DefaultMapper;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod.IntersectMapper;
@@ -15,12 +16,15 @@ import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Geometry;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -42,6 +46,18 @@ public class GranularityRelationMapper {
     }
 
     public SpatialGranularityRelationMap buildSpatialGranularityMap(GranularityRelationConfig config) {
+        return this.buildSpatialGranularityMap(config, null);
+    }
+
+    /**
+     * Build the spatial granularity map and precompute the spatial aggregation weights of each (target, base) pair.
+     *
+     * @param config                   granularity relation config of the feature
+     * @param spatialAggregationMethod spatial aggregation method the weights are computed for
+     * @return spatial granularity map
+     */
+    public SpatialGranularityRelationMap buildSpatialGranularityMap(GranularityRelationConfig config,
+                                                                    String spatialAggregationMethod) {
         logger.info("Building spatial granularity map for " + config.getFeatureTypeName() + " feature..");
         SpatialGranularityRelationMap spatialMap;
         String spatialGranularity = config.getSpatialGranularity();
@@ -79,10 +95,37 @@ public class GranularityRelationMapper {
                 default:
                     spatialMap = new SpatialGranularityRelationMap();
             }
+
+            if (SpatialWeightCalculator.isWeightedMethod(spatialAggregationMethod)) {
+                this.computeSpatialWeights(spatialMap, spatialAggregationMethod, targetSpatialGranules,
+                        targetUUID, new GranuleGeometryCache(spatialGranularity, baseSpatialGranuleSet, baseUUID));
+            }
         }
         return spatialMap;
     }
 
+    public void computeSpatialWeights(SpatialGranularityRelationMap spatialMap, String spatialAggregationMethod,
+                                      SimpleFeatureCollection targetSpatialGranules, String targetUUID,
+                                      GranuleGeometryCache baseGranuleCache) {
+        long generation = spatialMap.getWeightGeneration();
+        SimpleFeatureIterator iterator = targetSpatialGranules.features();
+        try {
+            while (iterator.hasNext()) {
+                SimpleFeature targetGranule = iterator.next();
+                String targetGranuleId = targetGranule.getAttribute(targetUUID).toString();
+                HashMap<String, Double> weights = SpatialWeightCalculator.calculateWeights(spatialAggregationMethod,
+                        (Geometry) targetGranule.getDefaultGeometry(), spatialMap.getBaseGranuleIds(targetGranuleId),
+                        baseGranuleCache);
+                if (!spatialMap.addWeights(targetGranuleId, spatialAggregationMethod, generation, weights)) {
+                    //the granularity was re-ingested meanwhile, the weights are computed again on use
+                    break;
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
     public SimpleFeatureCollection getGranuleSet(String granularityName) {
         try {
             Query query = new Query(granularityName);
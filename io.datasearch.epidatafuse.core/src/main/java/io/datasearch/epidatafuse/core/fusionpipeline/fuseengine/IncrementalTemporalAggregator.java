@@ -0,0 +1,161 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion.FeatureIngestListener;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregationUtil;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleWindowState;
+import org.opengis.feature.simple.SimpleFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the temporal aggregation state of every base granule up to date as features are ingested, so that a fusion
+ * tick reads the window aggregate instead of scanning the datastore.
+ */
+public class IncrementalTemporalAggregator implements FeatureIngestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalTemporalAggregator.class);
+    private static final String DTG_ATTRIBUTE = "dtg";
+    private Map<String, FeatureWindowState> featureStates = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the window aggregate can answer the given temporal aggregation method.
+     */
+    public static boolean isSupportedMethod(String aggregationMethod) {
+        if (aggregationMethod == null) {
+            return false;
+        }
+        switch (aggregationMethod) {
+            case AggregationUtil.MEAN:
+            case AggregationUtil.SUM:
+            case AggregationUtil.MAX:
+            case AggregationUtil.MIN:
+            case AggregationUtil.EQUALLY_DISTRIBUTE:
+            case AggregationUtil.BRING_FORWARD:
+            case "None":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * State of the feature type, or null if it has not been seeded for the given granule and attribute yet.
+     */
+    public FeatureWindowState getState(String featureTypeName, String uuidAttribute, String aggregateOn) {
+        FeatureWindowState state = this.featureStates.get(featureTypeName);
+        if (state != null && state.matches(uuidAttribute, aggregateOn)) {
+            return state;
+        }
+        return null;
+    }
+
+    /**
+     * Register an empty state for the feature type. Ingested features are tracked from this point, the caller seeds
+     * the state with the features already in the datastore.
+     */
+    public FeatureWindowState createState(String featureTypeName, String uuidAttribute, String aggregateOn) {
+        FeatureWindowState state = new FeatureWindowState(uuidAttribute, aggregateOn);
+        this.featureStates.put(featureTypeName, state);
+        return state;
+    }
+
+    public void removeState(String featureTypeName) {
+        this.featureStates.remove(featureTypeName);
+    }
+
+    public void clear() {
+        this.featureStates.clear();
+    }
+
+    @Override
+    public void onFeatureIngested(String featureTypeName, SimpleFeature feature) {
+        FeatureWindowState state = this.featureStates.get(featureTypeName);
+        if (state != null) {
+            try {
+                state.add(feature);
+            } catch (Exception e) {
+                logger.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Window state of all the granules of a feature type.
+     */
+    public static class FeatureWindowState {
+        private String uuidAttribute;
+        private String aggregateOn;
+        private Map<String, GranuleWindowState> granuleStates = new ConcurrentHashMap<>();
+
+        FeatureWindowState(String uuidAttribute, String aggregateOn) {
+            this.uuidAttribute = uuidAttribute;
+            this.aggregateOn = aggregateOn;
+        }
+
+        boolean matches(String uuidAttribute, String aggregateOn) {
+            return this.uuidAttribute.equals(uuidAttribute) && this.aggregateOn.equals(aggregateOn);
+        }
+
+        public void add(SimpleFeature feature) {
+            Object granuleId = feature.getAttribute(this.uuidAttribute);
+            Object dtg = feature.getAttribute(DTG_ATTRIBUTE);
+            Object value = feature.getAttribute(this.aggregateOn);
+            if (granuleId == null || !(dtg instanceof Date) || value == null) {
+                return;
+            }
+            double observedValue;
+            try {
+                observedValue = Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                return;
+            }
+            String granuleKey = granuleId.toString().toLowerCase(Locale.getDefault());
+            this.granuleStates.computeIfAbsent(granuleKey, key -> new GranuleWindowState())
+                    .put(((Date) dtg).getTime(), observedValue);
+        }
+
+        /**
+         * Slide the window of every granule to (windowStart, windowEnd), both epoch milliseconds.
+         */
+        public void advance(long windowStart, long windowEnd) {
+            this.granuleStates.values().forEach(state -> state.advance(windowStart, windowEnd));
+        }
+
+        /**
+         * Whether every granule window holds all of its observations.
+         */
+        public boolean isComplete() {
+            return this.granuleStates.values().stream().allMatch(GranuleWindowState::isComplete);
+        }
+
+        public GranuleWindowState getGranuleState(String granuleId) {
+            return this.granuleStates.get(granuleId.toLowerCase(Locale.getDefault()));
+        }
+    }
+
+    /**
+     * Aggregate of the window for the given temporal aggregation method.
+     */
+    public static double aggregate(GranuleWindowState state, String aggregationMethod, double divideFactor) {
+        switch (aggregationMethod) {
+            case AggregationUtil.MEAN:
+                return state.getMean();
+            case AggregationUtil.SUM:
+                return state.getSum();
+            case AggregationUtil.MAX:
+                return state.getMax();
+            case AggregationUtil.MIN:
+                return state.getMin();
+            case AggregationUtil.EQUALLY_DISTRIBUTE:
+                double value = state.getLastValue();
+                return divideFactor != 0 && !Double.isNaN(divideFactor) ? value / divideFactor : value;
+            default:
+                return state.getLastValue();
+        }
+    }
+}
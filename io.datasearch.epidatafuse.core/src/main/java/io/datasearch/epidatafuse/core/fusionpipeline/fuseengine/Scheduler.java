@@ -4,21 +4,124 @@ package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.TimerTask;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * For scheduling processes.
+ * For scheduling processes. A run is skipped while the previous run of the same pipeline is still in progress.
  */
-public class Scheduler extends TimerTask {
+public class Scheduler implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(Scheduler.class);
     private FuseEngine fuseEngine;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile FusionSchedulerService.ScheduleMode mode = FusionSchedulerService.ScheduleMode.FIXED_DELAY;
+    private volatile long periodNanos;
+    private final AtomicLong expectedStartNanos = new AtomicLong();
+    //compute time of the run, data frames are persisted afterwards by the frame writer of the pipeline
+    private volatile long lastRunDurationMillis;
+    private volatile long lastLagMillis;
+    private volatile long maxLagMillis;
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
 
     public void setFuseEngine(FuseEngine fuseEngine) {
         this.fuseEngine = fuseEngine;
     }
 
+    /**
+     * Called by the scheduler service right before the runs are scheduled.
+     */
+    void onScheduled(FusionSchedulerService.ScheduleMode mode, long initialDelay, long period, TimeUnit unit) {
+        this.mode = mode;
+        this.periodNanos = unit.toNanos(period);
+        this.expectedStartNanos.set(System.nanoTime() + unit.toNanos(initialDelay));
+    }
+
     public void run() {
-        this.fuseEngine.invokeAggregationProcess();
+        long startNanos = System.nanoTime();
+        long lagNanos = Math.max(0, startNanos - this.expectedStartNanos.get());
+
+        //fixed rate runs that fell a whole period behind are dropped instead of being fired back to back
+        if (this.mode == FusionSchedulerService.ScheduleMode.FIXED_RATE && this.periodNanos > 0 &&
+                lagNanos >= this.periodNanos) {
+            this.expectedStartNanos.addAndGet(this.periodNanos);
+            this.skippedCount.incrementAndGet();
+            logger.warn("Fusion run skipped. schedule is behind by " +
+                    TimeUnit.NANOSECONDS.toMillis(lagNanos) + " ms");
+            return;
+        }
+        if (!this.running.compareAndSet(false, true)) {
+            this.skippedCount.incrementAndGet();
+            logger.warn("Fusion run skipped. previous run is still in progress");
+            return;
+        }
+
+        try {
+            this.fuseEngine.invokeAggregationProcess();
+        } catch (Throwable e) {
+            //an exception must not cancel the following runs of the pipeline
+            this.failureCount.incrementAndGet();
+            logger.error(e.getMessage());
+        } finally {
+            long endNanos = System.nanoTime();
+            this.lastRunDurationMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+            this.lastLagMillis = TimeUnit.NANOSECONDS.toMillis(lagNanos);
+            this.maxLagMillis = Math.max(this.maxLagMillis, this.lastLagMillis);
+            this.runCount.incrementAndGet();
+            if (this.mode == FusionSchedulerService.ScheduleMode.FIXED_RATE) {
+                this.expectedStartNanos.addAndGet(this.periodNanos);
+            } else {
+                this.expectedStartNanos.set(endNanos + this.periodNanos);
+            }
+            this.running.set(false);
+            logger.info("Fusion run completed in " + this.lastRunDurationMillis + " ms with a lag of " +
+                    this.lastLagMillis + " ms");
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public long getLastRunDurationMillis() {
+        return lastRunDurationMillis;
+    }
+
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("mode", mode.toString());
+        statistics.put("running", isRunning());
+        statistics.put("runCount", runCount.get());
+        statistics.put("skippedCount", skippedCount.get());
+        statistics.put("failureCount", failureCount.get());
+        statistics.put("lastRunDurationMillis", lastRunDurationMillis);
+        statistics.put("lastLagMillis", lastLagMillis);
+        statistics.put("maxLagMillis", maxLagMillis);
+        return statistics;
     }
 }
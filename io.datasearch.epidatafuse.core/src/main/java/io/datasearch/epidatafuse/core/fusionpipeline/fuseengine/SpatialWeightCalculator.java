@@ -0,0 +1,81 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregationUtil;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleGeometryCache;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Geometry based weights used by spatial aggregation methods.
+ */
+public class SpatialWeightCalculator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialWeightCalculator.class);
+
+    public static boolean isWeightedMethod(String aggregationMethod) {
+        return AggregationUtil.INVERSE_DISTANCE.equals(aggregationMethod) ||
+                AggregationUtil.AREA_BASED_AVERAGE.equals(aggregationMethod);
+    }
+
+    public static HashMap<String, Double> calculateWeights(String aggregationMethod, Geometry targetGeometry,
+                                                           ArrayList<String> baseGranuleIds,
+                                                           GranuleGeometryCache baseGranuleCache) {
+
+        HashMap<String, Double> weights = new HashMap<String, Double>();
+
+        if (targetGeometry == null || baseGranuleIds == null || aggregationMethod == null) {
+            return weights;
+        }
+
+        switch (aggregationMethod) {
+            case AggregationUtil.INVERSE_DISTANCE:
+
+                //caluculate distance from the target granule to each base granules.
+                for (String baseGranuleId : baseGranuleIds) {
+                    Geometry baseGeometry = baseGranuleCache.getGeometry(baseGranuleId);
+                    if (baseGeometry != null) {
+                        weights.put(baseGranuleId, calculateDistance(baseGeometry, targetGeometry));
+                    }
+                }
+                break;
+
+            case AggregationUtil.AREA_BASED_AVERAGE:
+                for (String baseGranuleId : baseGranuleIds) {
+                    Geometry baseGeometry = baseGranuleCache.getGeometry(baseGranuleId);
+                    if (baseGeometry != null) {
+                        weights.put(baseGranuleId, calculateIntersectRatio(targetGeometry, baseGeometry));
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return weights;
+    }
+
+    public static Double calculateDistance(Geometry g1, Geometry g2) {
+        Point gc1 = g1.getCentroid();
+        Point gc2 = g2.getCentroid();
+
+        Double distance = gc1.distance(gc2);
+
+        return distance;
+    }
+
+    public static Double calculateIntersectRatio(Geometry g1, Geometry g2) {
+        double areaRatio = 0.0;
+        try {
+            Geometry intersect = g1.intersection(g2);
+            areaRatio = intersect.getArea() / g2.getArea();
+        } catch (Throwable e) {
+            logger.error(e.getMessage());
+            areaRatio = 0.0;
+        }
+        return areaRatio;
+    }
+}
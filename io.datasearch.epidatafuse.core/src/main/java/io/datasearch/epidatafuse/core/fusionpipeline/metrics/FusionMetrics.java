@@ -0,0 +1,63 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.metrics;
+
+/**
+ * Metrics of the fusion runs of a pipeline, by feature type and stage.
+ * Feature type is null for the stages of a whole run.
+ */
+public class FusionMetrics {
+    public static final String GRANULE_LOADING = "granule_loading";
+    public static final String WINDOW_SCAN = "window_scan";
+    public static final String TEMPORAL_AGGREGATION = "temporal_aggregation";
+    public static final String CUSTOM_ATTRIBUTES = "custom_attributes";
+    public static final String SPATIAL_AGGREGATION = "spatial_aggregation";
+    public static final String FEATURE_AGGREGATION = "feature_aggregation";
+    public static final String FUSION_RUN = "fusion_run";
+    public static final String FRAME_WRITE = "frame_write";
+    public static final String CSV_WRITE = "csv_write";
+    private static final String STAGE_DURATION = "epidatafuse_stage_duration_seconds";
+    private static final String STAGE_DURATION_HELP = "Duration of the stages of fusion runs";
+    private static final String FEATURES = "epidatafuse_stage_features_total";
+    private static final String FEATURES_HELP = "Features processed by the stages of fusion runs";
+    private static final String ERRORS = "epidatafuse_stage_errors_total";
+    private static final String ERRORS_HELP = "Failures of the stages of fusion runs";
+    private static final String PIPELINE_LABEL = "pipeline";
+    private static final String FEATURE_TYPE_LABEL = "feature_type";
+    private static final String STAGE_LABEL = "stage";
+    private MetricsRegistry registry;
+    private String pipelineName;
+
+    public FusionMetrics(String pipelineName) {
+        this(MetricsRegistry.getInstance(), pipelineName);
+    }
+
+    public FusionMetrics(MetricsRegistry registry, String pipelineName) {
+        this.registry = registry;
+        this.pipelineName = pipelineName;
+    }
+
+    public Histogram stageDuration(String featureType, String stage) {
+        return this.registry.histogram(STAGE_DURATION, STAGE_DURATION_HELP, PIPELINE_LABEL, pipelineName,
+                FEATURE_TYPE_LABEL, featureType, STAGE_LABEL, stage);
+    }
+
+    public Counter features(String featureType, String stage) {
+        return this.registry.counter(FEATURES, FEATURES_HELP, PIPELINE_LABEL, pipelineName,
+                FEATURE_TYPE_LABEL, featureType, STAGE_LABEL, stage);
+    }
+
+    public Counter errors(String featureType, String stage) {
+        return this.registry.counter(ERRORS, ERRORS_HELP, PIPELINE_LABEL, pipelineName,
+                FEATURE_TYPE_LABEL, featureType, STAGE_LABEL, stage);
+    }
+
+    public void recordStage(String featureType, String stage, long startNanos) {
+        this.stageDuration(featureType, stage).observeNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Drop the series of the pipeline.
+     */
+    public void clear() {
+        this.registry.remove(PIPELINE_LABEL, pipelineName);
+    }
+}
@@ -0,0 +1,52 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in seconds over fixed buckets. Observations do not lock.
+ */
+public class Histogram {
+    //upper bounds of the buckets in seconds, from lookups of a fraction of a millisecond to whole fusion runs
+    static final double[] BUCKETS = {0.0001, 0.0005, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10,
+            30, 60, 120, 300};
+    private final LongAdder[] bucketCounts = new LongAdder[BUCKETS.length + 1];
+    private final DoubleAdder sum = new DoubleAdder();
+
+    public Histogram() {
+        for (int i = 0; i < this.bucketCounts.length; i++) {
+            this.bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        this.observe((double) nanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public void observe(double seconds) {
+        int bucket = 0;
+        while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+            bucket++;
+        }
+        this.bucketCounts[bucket].increment();
+        this.sum.add(seconds);
+    }
+
+    /**
+     * Cumulative counts of the buckets, the last is the count of every observation.
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[this.bucketCounts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += this.bucketCounts[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public double getSum() {
+        return this.sum.sum();
+    }
+}
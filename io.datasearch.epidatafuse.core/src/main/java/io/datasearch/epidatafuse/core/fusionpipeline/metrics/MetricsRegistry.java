@@ -0,0 +1,136 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics shared by all the pipelines of the server. Series are identified by the metric name and label values and
+ * written in the Prometheus text exposition format.
+ */
+public class MetricsRegistry {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    private static final String COUNTER_TYPE = "counter";
+    private static final String HISTOGRAM_TYPE = "histogram";
+    private final ConcurrentMap<String, MetricFamily> families = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Counter of the given labels, labels are given as name and value pairs.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) this.getFamily(name, help, COUNTER_TYPE)
+                .series.computeIfAbsent(formatLabels(labels), key -> new Counter());
+    }
+
+    /**
+     * Histogram of the given labels, labels are given as name and value pairs.
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) this.getFamily(name, help, HISTOGRAM_TYPE)
+                .series.computeIfAbsent(formatLabels(labels), key -> new Histogram());
+    }
+
+    private MetricFamily getFamily(String name, String help, String type) {
+        MetricFamily family = this.families.computeIfAbsent(name, key -> new MetricFamily(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is registered as a " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * Drop every series with the given label value, used when a pipeline is removed.
+     */
+    public void remove(String labelName, String labelValue) {
+        String label = labelName + "=\"" + escape(labelValue) + "\"";
+        this.families.values().forEach(family -> family.series.keySet()
+                .removeIf(labels -> labels.equals(label) || labels.startsWith(label + ",") ||
+                        labels.contains("," + label)));
+    }
+
+    public String scrape() {
+        StringBuilder output = new StringBuilder();
+        new TreeMap<>(this.families).forEach((name, family) -> {
+            output.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            output.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                if (series.getValue() instanceof Counter) {
+                    appendSample(output, name, series.getKey(), null, ((Counter) series.getValue()).get());
+                } else {
+                    appendHistogram(output, name, series.getKey(), (Histogram) series.getValue());
+                }
+            }
+        });
+        return output.toString();
+    }
+
+    private static void appendHistogram(StringBuilder output, String name, String labels, Histogram histogram) {
+        long[] counts = histogram.getCumulativeCounts();
+        for (int i = 0; i < Histogram.BUCKETS.length; i++) {
+            appendSample(output, name + "_bucket", labels,
+                    "le=\"" + BigDecimal.valueOf(Histogram.BUCKETS[i]).toPlainString() + "\"", counts[i]);
+        }
+        appendSample(output, name + "_bucket", labels, "le=\"+Inf\"", counts[counts.length - 1]);
+        output.append(name).append("_sum");
+        if (!labels.isEmpty()) {
+            output.append('{').append(labels).append('}');
+        }
+        output.append(' ').append(histogram.getSum()).append('\n');
+        appendSample(output, name + "_count", labels, null, counts[counts.length - 1]);
+    }
+
+    private static void appendSample(StringBuilder output, String name, String labels, String extraLabel,
+                                     long value) {
+        output.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            output.append('{').append(labels);
+            if (extraLabel != null) {
+                output.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            output.append('}');
+        }
+        output.append(' ').append(value).append('\n');
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (labels[i + 1] == null) {
+                continue;
+            }
+            if (formatted.length() > 0) {
+                formatted.append(',');
+            }
+            formatted.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return formatted.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Series of a metric by their formatted labels.
+     */
+    private static class MetricFamily {
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+        MetricFamily(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
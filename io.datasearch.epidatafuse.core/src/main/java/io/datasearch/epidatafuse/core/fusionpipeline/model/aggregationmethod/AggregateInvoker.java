@@ -133,6 +133,114 @@ public class AggregateInvoker {
         return finalValue;
     }
 
+    /**
+     * Mean of the first length values. NaN marks a missing value. NaN if no value is present.
+     */
+    public static double mean(double[] values, int length) {
+        double sum = 0.0;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (!Double.isNaN(value)) {
+                sum += value;
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    public static double sum(double[] values, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (!Double.isNaN(value)) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    public static double max(double[] values, int length) {
+        double max = Double.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (!Double.isNaN(value)) {
+                max = Math.max(max, value);
+                found = true;
+            }
+        }
+        return found ? max : 0.0;
+    }
+
+    public static double min(double[] values, int length) {
+        double min = Double.POSITIVE_INFINITY;
+        boolean found = false;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (!Double.isNaN(value)) {
+                min = Math.min(min, value);
+                found = true;
+            }
+        }
+        return found ? min : 0.0;
+    }
+
+    /**
+     * Inverse distance weighted value. Distances of granules without a value still take part in the weights.
+     */
+    public static double inverseDistance(double[] values, double[] distances, int length) {
+        double inverseDistanceSum = 0.0;
+        for (int i = 0; i < length; i++) {
+            double distance = distances[i];
+            if (distance != 0 && !Double.isNaN(distance)) {
+                inverseDistanceSum += 1.0 / distance;
+            }
+        }
+
+        double finalValue = 0.0;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            double distance = distances[i];
+            if (!Double.isNaN(value) && distance != 0 && !Double.isNaN(distance)) {
+                finalValue += value * ((1.0 / distance) / inverseDistanceSum);
+            }
+        }
+        return finalValue;
+    }
+
+    public static double areaBasedAverage(double[] values, double[] intersectRatios, int length) {
+        double finalValue = 0.0;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            double ratio = intersectRatios[i];
+            if (!Double.isNaN(value) && ratio != 0 && !Double.isNaN(ratio)) {
+                finalValue += value * ratio;
+            }
+        }
+        return finalValue;
+    }
+
+    /**
+     * First present value divided by the divide factor. A NaN or zero factor leaves the value as it is.
+     */
+    public static double equallyDistribute(double[] values, int length, double divideFactor) {
+        double value = defaultAggregate(values, length);
+        if (divideFactor != 0 && !Double.isNaN(divideFactor)) {
+            return value / divideFactor;
+        }
+        return value;
+    }
+
+    public static double defaultAggregate(double[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Double.isNaN(values[i])) {
+                return values[i];
+            }
+        }
+        return 0.0;
+    }
+
     public static double calculate(ArrayList<Double> values, String method) {
         Double calculatedValue = 0.0;
         switch (method) {
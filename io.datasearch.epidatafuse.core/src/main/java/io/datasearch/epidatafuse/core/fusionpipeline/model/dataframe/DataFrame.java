@@ -3,40 +3,68 @@ package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.SpatioTemporallyAggregatedCollection;
 import org.opengis.feature.simple.SimpleFeature;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * Dataframe class
+ * Granules are kept in a dictionary from the granule to its row, the aggregated values of each feature type in a
+ * column of doubles with a bitmap of the missing values.
  */
 
 public class DataFrame {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final String MISSING_VALUE = "NA";
 
     private String dtg;
+    private String recordDtg;
     private String spatialGranularity;
     private String temporalGranularity;
     private ArrayList<String> featureTypeNames = new ArrayList<String>();
-    private HashMap<String, SpatioTemporallyAggregatedCollection> aggregatedFeatures =
-            new HashMap<String, SpatioTemporallyAggregatedCollection>();
     private HashMap<String, String> aggregatedAttributeNames = new HashMap<String, String>();
     private ArrayList<String> finalSpatialGranules = new ArrayList<String>();
+    private HashMap<String, Integer> granuleRows = new HashMap<String, Integer>();
+    //columns in feature type order, values of rows without a value are NaN
+    private ArrayList<double[]> columns = new ArrayList<double[]>();
+    //a bit per row, set for the rows without a value
+    private ArrayList<long[]> missingBitmaps = new ArrayList<long[]>();
+    private int capacity = INITIAL_CAPACITY;
 
     public DataFrame(String dtg) {
         this.dtg = dtg;
     }
 
-    public void addAggregatedFeatureType(SpatioTemporallyAggregatedCollection collection) {
-        this.featureTypeNames.add(collection.getFeatureTypeName());
-        this.aggregatedFeatures.put(collection.getFeatureTypeName(), collection);
-        Set<String> granuleSet = collection.getFeatureHashMap().keySet();
-        for (String granule : granuleSet) {
-            if (!finalSpatialGranules.contains(granule)) {
-                finalSpatialGranules.add(granule);
+    public synchronized void addAggregatedFeatureType(SpatioTemporallyAggregatedCollection collection) {
+        String featureType = collection.getFeatureTypeName();
+        String aggregateAttr = collection.getAggregatedAttributeList().get(0);
+        int column = this.columns.size();
+        this.featureTypeNames.add(featureType);
+        this.aggregatedAttributeNames.put(featureType, aggregateAttr);
+        double[] values = new double[this.capacity];
+        Arrays.fill(values, Double.NaN);
+        long[] missing = new long[getBitmapWords(this.capacity)];
+        for (int row = 0; row < this.finalSpatialGranules.size(); row++) {
+            missing[row >>> 6] |= 1L << row;
+        }
+        this.columns.add(values);
+        this.missingBitmaps.add(missing);
+
+        for (Map.Entry<String, SimpleFeature> entry : collection.getFeatureHashMap().entrySet()) {
+            int row = this.getOrAddRow(entry.getKey());
+            Object value = entry.getValue() != null ? entry.getValue().getAttribute(aggregateAttr) : null;
+            if (value != null) {
+                this.columns.get(column)[row] = toDouble(value);
+                this.missingBitmaps.get(column)[row >>> 6] &= ~(1L << row);
             }
         }
 
-        aggregatedAttributeNames.put(collection.getFeatureTypeName(), collection.getAggregatedAttributeList().get(0));
+        if (this.recordDtg == null) {
+            this.recordDtg = collection.getDtg();
+        }
         if (this.temporalGranularity == null) {
             this.temporalGranularity = collection.getTemporalGranularity();
         }
@@ -45,24 +73,88 @@ public class DataFrame {
         }
     }
 
+    private int getOrAddRow(String granule) {
+        Integer row = this.granuleRows.get(granule);
+        if (row != null) {
+            return row;
+        }
+        int newRow = this.finalSpatialGranules.size();
+        if (newRow == this.capacity) {
+            this.grow();
+        }
+        this.finalSpatialGranules.add(granule);
+        this.granuleRows.put(granule, newRow);
+        //the granule has no value in the columns added before it
+        for (long[] missing : this.missingBitmaps) {
+            missing[newRow >>> 6] |= 1L << newRow;
+        }
+        return newRow;
+    }
+
+    private void grow() {
+        int newCapacity = this.capacity * 2;
+        for (int i = 0; i < this.columns.size(); i++) {
+            double[] values = Arrays.copyOf(this.columns.get(i), newCapacity);
+            Arrays.fill(values, this.capacity, newCapacity, Double.NaN);
+            this.columns.set(i, values);
+            this.missingBitmaps.set(i, Arrays.copyOf(this.missingBitmaps.get(i), getBitmapWords(newCapacity)));
+        }
+        this.capacity = newCapacity;
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static int getBitmapWords(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    private boolean isMissing(int column, int row) {
+        return (this.missingBitmaps.get(column)[row >>> 6] & (1L << row)) != 0;
+    }
+
     public ArrayList<String> createCSVRecords() {
-        ArrayList<String> csvRecords = new ArrayList<String>();
+        ArrayList<String> csvRecords = new ArrayList<String>(finalSpatialGranules.size() + 1);
         csvRecords.add(this.createHeaderRow());
-        for (String spatialGranule : finalSpatialGranules) {
-            csvRecords.add(this.createCsvRow(spatialGranule));
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < finalSpatialGranules.size(); i++) {
+            row.setLength(0);
+            this.appendCsvRow(row, i);
+            csvRecords.add(row.toString());
         }
         return csvRecords;
     }
 
+    /**
+     * Write the header and a row per granule as CSV lines.
+     */
+    public void writeCSVRecords(Writer writer) throws IOException {
+        writer.write(this.createHeaderRow());
+        writer.write('\n');
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < finalSpatialGranules.size(); i++) {
+            row.setLength(0);
+            this.appendCsvRow(row, i);
+            row.append('\n');
+            writer.append(row);
+        }
+    }
+
     public String createHeaderRow() {
         ArrayList<String> headerRow = new ArrayList<>();
         headerRow.add("spatialID");
         headerRow.add("dtg");
 
         for (String featureType : featureTypeNames) {
-            String attributeValueName = aggregatedAttributeNames.get(featureType);
-            String header = featureType + "_" + attributeValueName;
-            headerRow.add(header);
+            headerRow.add(getColumnName(featureType));
         }
 
         String joined = String.join(",", headerRow);
@@ -70,23 +162,54 @@ public class DataFrame {
     }
 
     public String createCsvRow(String targetGranule) {
-        ArrayList<String> row = new ArrayList<>();
-        row.add(targetGranule);
-        String dtg = getAggregatedFeatures().get(featureTypeNames.get(0)).getDtg();
-        row.add(dtg);
-        for (String featureType : featureTypeNames) {
-            String aggregateAttr = aggregatedAttributeNames.get(featureType);
-            SimpleFeature feature = aggregatedFeatures.get(featureType).getFeatureForSpatialGranule(targetGranule);
+        StringBuilder row = new StringBuilder();
+        Integer index = granuleRows.get(targetGranule);
+        if (index != null) {
+            this.appendCsvRow(row, index);
+        } else {
+            row.append(targetGranule).append(',').append(getRecordDtg());
+            for (int column = 0; column < columns.size(); column++) {
+                row.append(',').append(MISSING_VALUE);
+            }
+        }
+        return row.toString();
+    }
 
-            if (feature != null) {
-                String value = feature.getAttribute(aggregateAttr).toString();
-                row.add(value);
+    private void appendCsvRow(StringBuilder row, int index) {
+        row.append(finalSpatialGranules.get(index)).append(',').append(getRecordDtg());
+        for (int column = 0; column < columns.size(); column++) {
+            row.append(',');
+            if (this.isMissing(column, index)) {
+                row.append(MISSING_VALUE);
             } else {
-                row.add("NA");
+                row.append(columns.get(column)[index]);
             }
         }
-        String joined = String.join(",", row);
-        return joined;
+    }
+
+    /**
+     * Fill the values of a feature type in granule order. Missing values are NaN and set in the missing bitmap,
+     * which holds a bit per granule.
+     */
+    public void fillColumn(String featureType, double[] values, long[] missing) {
+        int column = featureTypeNames.indexOf(featureType);
+        int rows = finalSpatialGranules.size();
+        System.arraycopy(columns.get(column), 0, values, 0, rows);
+        long[] columnMissing = missingBitmaps.get(column);
+        for (int word = 0; word < getBitmapWords(rows); word++) {
+            missing[word] |= columnMissing[word];
+        }
+    }
+
+    public String getColumnName(String featureType) {
+        return featureType + "_" + aggregatedAttributeNames.get(featureType);
+    }
+
+    /**
+     * Timestamp of the aggregated records of the frame.
+     */
+    public String getRecordDtg() {
+        return recordDtg;
     }
 
     public String getTemporalGranularity() {
@@ -109,10 +232,6 @@ public class DataFrame {
         return finalSpatialGranules;
     }
 
-    public HashMap<String, SpatioTemporallyAggregatedCollection> getAggregatedFeatures() {
-        return aggregatedFeatures;
-    }
-
     public HashMap<String, String> getAggregatedAttributeNames() {
         return aggregatedAttributeNames;
     }
@@ -0,0 +1,143 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary columnar encoding of data frames.
+ * The header holds the frame timestamps, granularities, column names and the granule dictionary. It is followed by a
+ * block per column with a missing value bitmap of a bit per granule and the values as doubles in granule order.
+ * Strings are written as a byte length followed by UTF-8 bytes, a length of -1 is a null string.
+ */
+public class DataFrameCodec {
+    public static final String FILE_EXTENSION = ".frame";
+    static final int MAGIC = 0x45444646;
+    static final int VERSION = 1;
+
+    private DataFrameCodec() {
+    }
+
+    public static void write(DataFrame dataFrame, Path file) throws IOException {
+        write(encode(dataFrame), file);
+    }
+
+    /**
+     * Write an encoded frame, the position of the buffer is left unchanged.
+     */
+    public static void write(ByteBuffer encodedFrame, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(encodedFrame, channel);
+        }
+    }
+
+    public static void write(ByteBuffer encodedFrame, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = encodedFrame.duplicate();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public static ByteBuffer encode(DataFrame dataFrame) {
+        List<String> featureTypes = dataFrame.getFeatureTypeNames();
+        List<String> granules = dataFrame.getFinalSpatialGranules();
+        int rows = granules.size();
+        byte[][] strings = new byte[4 + featureTypes.size() + rows][];
+        int index = 0;
+        strings[index++] = toBytes(dataFrame.getDtg());
+        strings[index++] = toBytes(dataFrame.getRecordDtg());
+        strings[index++] = toBytes(dataFrame.getSpatialGranularity());
+        strings[index++] = toBytes(dataFrame.getTemporalGranularity());
+        for (String featureType : featureTypes) {
+            strings[index++] = toBytes(dataFrame.getColumnName(featureType));
+        }
+        for (String granule : granules) {
+            strings[index++] = toBytes(granule);
+        }
+        int headerSize = 4 * 4;
+        for (byte[] string : strings) {
+            headerSize += 4 + (string != null ? string.length : 0);
+        }
+        int dataOffset = align(headerSize);
+        int bitmapWords = getBitmapWords(rows);
+        long size = dataOffset + (long) featureTypes.size() * (bitmapWords + rows) * 8;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Data frame is too large to encode");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        index = 0;
+        for (int i = 0; i < 4; i++) {
+            putString(buffer, strings[index++]);
+        }
+        buffer.putInt(featureTypes.size());
+        for (int i = 0; i < featureTypes.size(); i++) {
+            putString(buffer, strings[index++]);
+        }
+        buffer.putInt(rows);
+        for (int i = 0; i < rows; i++) {
+            putString(buffer, strings[index++]);
+        }
+        buffer.position(dataOffset);
+        double[] values = new double[rows];
+        long[] missing = new long[bitmapWords];
+        for (String featureType : featureTypes) {
+            Arrays.fill(missing, 0L);
+            dataFrame.fillColumn(featureType, values, missing);
+            buffer.asLongBuffer().put(missing);
+            buffer.position(buffer.position() + bitmapWords * 8);
+            buffer.asDoubleBuffer().put(values);
+            buffer.position(buffer.position() + rows * 8);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Memory map a frame file. Values are read from the mapping on access.
+     */
+    public static MappedDataFrame read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedDataFrame(buffer);
+        }
+    }
+
+    /**
+     * Read a frame from an encoded buffer held in memory.
+     */
+    public static MappedDataFrame decode(ByteBuffer encodedFrame) throws IOException {
+        return new MappedDataFrame(encodedFrame.slice());
+    }
+
+    static int getBitmapWords(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static byte[] toBytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catalog of the data frames persisted for a pipeline.
+ * Entries are built from the frame headers once per file and refreshed when the output directory changes.
+ * A frame written in both formats is listed once, from its binary file.
+ */
+public class FrameCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(FrameCatalog.class);
+    private static final Map<String, FrameCatalog> CATALOGS = new ConcurrentHashMap<>();
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String FILE_NAME_PREFIX = "finalDataFrame_";
+    private static final String MISSING_VALUE = "NA";
+    private static final Comparator<FrameCatalogEntry> FRAME_ORDER =
+            Comparator.comparing(FrameCatalogEntry::getDtg, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(entry -> getFrameName(entry.getFileName()));
+    private Path directory;
+    private Map<String, FrameCatalogEntry> entries = new HashMap<>();
+
+    /**
+     * Visitor of the rows of a frame, returns false to stop visiting.
+     */
+    public interface RowVisitor {
+        boolean visit(String[] row) throws IOException;
+    }
+
+    public FrameCatalog(Path directory) {
+        this.directory = directory;
+    }
+
+    public static FrameCatalog getCatalog(String pipelineName) {
+        return CATALOGS.computeIfAbsent(pipelineName,
+                name -> new FrameCatalog(Paths.get("public", "output", name)));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Frames ordered by record timestamp and file name.
+     */
+    public synchronized List<FrameCatalogEntry> getEntries() {
+        this.refresh();
+        Map<String, FrameCatalogEntry> frames = new HashMap<>();
+        for (FrameCatalogEntry entry : this.entries.values()) {
+            frames.merge(getFrameName(entry.getFileName()), entry, (first, second) ->
+                    FrameCatalogEntry.BINARY_FORMAT.equals(first.getFormat()) ? first : second);
+        }
+        List<FrameCatalogEntry> sortedEntries = new ArrayList<>(frames.values());
+        sortedEntries.sort(FRAME_ORDER);
+        return sortedEntries;
+    }
+
+    //file name without the extension of its format
+    private static String getFrameName(String fileName) {
+        int extension = fileName.lastIndexOf('.');
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    /**
+     * Frames with records between from and to, both inclusive and optional, of the given granularities.
+     * Timestamps are ISO local date times, a date alone covers the whole day.
+     *
+     * @throws DateTimeParseException if from or to is not a valid timestamp
+     */
+    public List<FrameCatalogEntry> find(String from, String to, String spatialGranularity,
+                                        String temporalGranularity) {
+        LocalDateTime start = parseBound(from, false);
+        LocalDateTime end = parseBound(to, true);
+        List<FrameCatalogEntry> matches = new ArrayList<>();
+        for (FrameCatalogEntry entry : this.getEntries()) {
+            if (spatialGranularity != null && !spatialGranularity.equals(entry.getSpatialGranularity())) {
+                continue;
+            }
+            if (temporalGranularity != null && !temporalGranularity.equals(entry.getTemporalGranularity())) {
+                continue;
+            }
+            if (start != null || end != null) {
+                LocalDateTime dtg = entry.getDtg() != null ? parseTimestamp(entry.getDtg(), false) : null;
+                if (dtg == null || (start != null && dtg.isBefore(start)) || (end != null && !dtg.isBefore(end))) {
+                    continue;
+                }
+            }
+            matches.add(entry);
+        }
+        return matches;
+    }
+
+    public static int compare(FrameCatalogEntry first, FrameCatalogEntry second) {
+        return FRAME_ORDER.compare(first, second);
+    }
+
+    /**
+     * Visit the rows of a frame from the given row, rows hold the spatial granule, the timestamp and the values.
+     */
+    public void forEachRow(FrameCatalogEntry entry, int startRow, RowVisitor visitor) throws IOException {
+        Path file = this.directory.resolve(entry.getFileName());
+        if (FrameCatalogEntry.BINARY_FORMAT.equals(entry.getFormat())) {
+            MappedDataFrame dataFrame = DataFrameCodec.read(file);
+            for (int row = startRow; row < dataFrame.getRowCount(); row++) {
+                String[] record = new String[dataFrame.getColumnCount() + 2];
+                record[0] = dataFrame.getGranule(row);
+                record[1] = dataFrame.getRecordDtg();
+                for (int column = 0; column < dataFrame.getColumnCount(); column++) {
+                    record[column + 2] = dataFrame.isMissing(row, column) ?
+                            MISSING_VALUE : String.valueOf(dataFrame.getValue(row, column));
+                }
+                if (!visitor.visit(record)) {
+                    return;
+                }
+            }
+        } else {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                reader.readLine();
+                String line;
+                int row = 0;
+                while ((line = reader.readLine()) != null) {
+                    if (row++ >= startRow && !visitor.visit(line.split(","))) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void refresh() {
+        if (!Files.isDirectory(this.directory)) {
+            this.entries.clear();
+            return;
+        }
+        Set<String> fileNames = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || !(fileName.endsWith(DataFrameCodec.FILE_EXTENSION) ||
+                        fileName.endsWith(CSV_EXTENSION))) {
+                    continue;
+                }
+                fileNames.add(fileName);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                long size = Files.size(file);
+                FrameCatalogEntry entry = this.entries.get(fileName);
+                if (entry == null || entry.getLastModified() != lastModified || entry.getSize() != size) {
+                    try {
+                        this.entries.put(fileName, this.readEntry(file, fileName, lastModified, size));
+                    } catch (Exception e) {
+                        //frames that can not be read yet are retried on the next refresh
+                        this.entries.remove(fileName);
+                        logger.error(fileName + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
+        this.entries.keySet().retainAll(fileNames);
+    }
+
+    private FrameCatalogEntry readEntry(Path file, String fileName, long lastModified, long size)
+            throws IOException {
+        if (fileName.endsWith(DataFrameCodec.FILE_EXTENSION)) {
+            MappedDataFrame dataFrame = DataFrameCodec.read(file);
+            String[] headers = new String[dataFrame.getColumnCount() + 2];
+            headers[0] = "spatialID";
+            headers[1] = "dtg";
+            System.arraycopy(dataFrame.getColumnNames(), 0, headers, 2, dataFrame.getColumnCount());
+            return new FrameCatalogEntry(fileName, FrameCatalogEntry.BINARY_FORMAT, dataFrame.getRecordDtg(),
+                    dataFrame.getSpatialGranularity(), dataFrame.getTemporalGranularity(), dataFrame.getRowCount(),
+                    headers, lastModified, size);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("Empty data frame file");
+            }
+            String dtg = null;
+            int rowCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (rowCount == 0) {
+                    String[] record = line.split(",");
+                    dtg = record.length > 1 ? record[1] : null;
+                }
+                rowCount++;
+            }
+            //finalDataFrame_<spatial granularity>_<temporal granularity>_<timestamp>.csv
+            String spatialGranularity = null;
+            String temporalGranularity = null;
+            if (fileName.startsWith(FILE_NAME_PREFIX)) {
+                String name = fileName.substring(FILE_NAME_PREFIX.length(), fileName.length() - CSV_EXTENSION.length());
+                int timestampSeparator = name.lastIndexOf('_');
+                int granularitySeparator = timestampSeparator > 0 ? name.lastIndexOf('_', timestampSeparator - 1) : -1;
+                if (granularitySeparator > 0) {
+                    spatialGranularity = name.substring(0, granularitySeparator);
+                    temporalGranularity = name.substring(granularitySeparator + 1, timestampSeparator);
+                }
+            }
+            return new FrameCatalogEntry(fileName, FrameCatalogEntry.CSV_FORMAT, dtg, spatialGranularity,
+                    temporalGranularity, rowCount, headerLine.split(","), lastModified, size);
+        }
+    }
+
+    /**
+     * Bound of a timestamp range, null if not given. Invalid bounds are rejected rather than ignored.
+     */
+    static LocalDateTime parseBound(String timestamp, boolean endOfDay) {
+        return timestamp != null ? toLocalDateTime(timestamp, endOfDay) : null;
+    }
+
+    static LocalDateTime parseTimestamp(String timestamp, boolean endOfDay) {
+        try {
+            return toLocalDateTime(timestamp, endOfDay);
+        } catch (DateTimeParseException e) {
+            logger.error("Invalid timestamp " + timestamp);
+            return null;
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(String timestamp, boolean endOfDay) {
+        if (timestamp.length() == 10) {
+            LocalDate date = LocalDate.parse(timestamp);
+            return endOfDay ? date.plusDays(1).atStartOfDay() : date.atStartOfDay();
+        }
+        LocalDateTime dateTime = LocalDateTime.parse(timestamp.replace(' ', 'T'));
+        return endOfDay ? dateTime.plusNanos(1) : dateTime;
+    }
+}
@@ -0,0 +1,69 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
+
+/**
+ * Catalog entry of a persisted data frame.
+ */
+public class FrameCatalogEntry {
+    public static final String BINARY_FORMAT = "binary";
+    public static final String CSV_FORMAT = "csv";
+    private String fileName;
+    private String format;
+    //timestamp of the records of the frame, yyyy-MM-dd'T'HH:mm
+    private String dtg;
+    private String spatialGranularity;
+    private String temporalGranularity;
+    private int rowCount;
+    private String[] headers;
+    private long lastModified;
+    private long size;
+
+    public FrameCatalogEntry(String fileName, String format, String dtg, String spatialGranularity,
+                             String temporalGranularity, int rowCount, String[] headers, long lastModified,
+                             long size) {
+        this.fileName = fileName;
+        this.format = format;
+        this.dtg = dtg;
+        this.spatialGranularity = spatialGranularity;
+        this.temporalGranularity = temporalGranularity;
+        this.rowCount = rowCount;
+        this.headers = headers;
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getDtg() {
+        return dtg;
+    }
+
+    public String getSpatialGranularity() {
+        return spatialGranularity;
+    }
+
+    public String getTemporalGranularity() {
+        return temporalGranularity;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
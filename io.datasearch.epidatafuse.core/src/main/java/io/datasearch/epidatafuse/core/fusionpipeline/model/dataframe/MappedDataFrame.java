@@ -0,0 +1,141 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A data frame read from its binary encoding. The header is decoded eagerly, values are read from the buffer.
+ */
+public class MappedDataFrame {
+    private ByteBuffer buffer;
+    private String dtg;
+    private String recordDtg;
+    private String spatialGranularity;
+    private String temporalGranularity;
+    private String[] columnNames;
+    private String[] granules;
+    private int dataOffset;
+    private int bitmapWords;
+    private volatile Map<String, Integer> granuleRows;
+
+    MappedDataFrame(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != DataFrameCodec.MAGIC) {
+            throw new IOException("Not a data frame file");
+        }
+        if (buffer.getInt(4) != DataFrameCodec.VERSION) {
+            throw new IOException("Unsupported data frame version " + buffer.getInt(4));
+        }
+        ByteBuffer header = buffer.duplicate();
+        header.position(8);
+        this.dtg = getString(header);
+        this.recordDtg = getString(header);
+        this.spatialGranularity = getString(header);
+        this.temporalGranularity = getString(header);
+        this.columnNames = new String[header.getInt()];
+        for (int i = 0; i < this.columnNames.length; i++) {
+            this.columnNames[i] = getString(header);
+        }
+        this.granules = new String[header.getInt()];
+        for (int i = 0; i < this.granules.length; i++) {
+            this.granules[i] = getString(header);
+        }
+        this.dataOffset = DataFrameCodec.align(header.position());
+        this.bitmapWords = DataFrameCodec.getBitmapWords(this.granules.length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int getColumnOffset(int column) {
+        return this.dataOffset + column * (this.bitmapWords + this.granules.length) * 8;
+    }
+
+    public boolean isMissing(int row, int column) {
+        long word = this.buffer.getLong(getColumnOffset(column) + (row >>> 6) * 8);
+        return (word & (1L << row)) != 0;
+    }
+
+    /**
+     * Value of a granule, NaN if missing.
+     */
+    public double getValue(int row, int column) {
+        return this.buffer.getDouble(getColumnOffset(column) + (this.bitmapWords + row) * 8);
+    }
+
+    /**
+     * Row of a granule, -1 if the frame has no row for it.
+     */
+    public int getRow(String granule) {
+        Map<String, Integer> rows = this.granuleRows;
+        if (rows == null) {
+            rows = new HashMap<>(this.granules.length * 2);
+            for (int i = 0; i < this.granules.length; i++) {
+                rows.put(this.granules[i], i);
+            }
+            this.granuleRows = rows;
+        }
+        Integer row = rows.get(granule);
+        return row != null ? row : -1;
+    }
+
+    /**
+     * Value of a granule, null if missing.
+     */
+    public Double getValueOrNull(int row, int column) {
+        return isMissing(row, column) ? null : getValue(row, column);
+    }
+
+    /**
+     * Size of the encoded frame in bytes.
+     */
+    public int getSize() {
+        return this.buffer.capacity();
+    }
+
+    public int getRowCount() {
+        return granules.length;
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public String getGranule(int row) {
+        return granules[row];
+    }
+
+    public String[] getGranules() {
+        return granules;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public String getDtg() {
+        return dtg;
+    }
+
+    public String getRecordDtg() {
+        return recordDtg;
+    }
+
+    public String getSpatialGranularity() {
+        return spatialGranularity;
+    }
+
+    public String getTemporalGranularity() {
+        return temporalGranularity;
+    }
+}
@@ -0,0 +1,217 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded buffer of the most recent data frames of a pipeline, kept in their binary columnar encoding.
+ * The oldest frames are evicted once either the frame limit or the memory budget is exceeded.
+ */
+public class RecentFrameBuffer {
+    private ArrayDeque<MappedDataFrame> frames = new ArrayDeque<>();
+    private int maxFrames;
+    //bytes
+    private long memoryBudget;
+    private long size = 0;
+    private long evictedFrames = 0;
+
+    public RecentFrameBuffer(int maxFrames, long memoryBudget) {
+        this.resize(maxFrames, memoryBudget);
+    }
+
+    public synchronized void resize(int maxFrames, long memoryBudget) {
+        this.maxFrames = Math.max(maxFrames, 0);
+        this.memoryBudget = Math.max(memoryBudget, 0);
+        this.evict();
+    }
+
+    public synchronized boolean isEnabled() {
+        return this.maxFrames > 0 && this.memoryBudget > 0;
+    }
+
+    /**
+     * Add the newest frame. A frame larger than the whole memory budget is not kept.
+     */
+    public synchronized void add(MappedDataFrame frame) {
+        if (!this.isEnabled() || frame.getSize() > this.memoryBudget) {
+            return;
+        }
+        this.frames.addLast(frame);
+        this.size += frame.getSize();
+        this.evict();
+    }
+
+    private void evict() {
+        while (!this.frames.isEmpty() && (this.frames.size() > this.maxFrames || this.size > this.memoryBudget)) {
+            this.size -= this.frames.removeFirst().getSize();
+            this.evictedFrames++;
+        }
+    }
+
+    public synchronized MappedDataFrame getLatest() {
+        return this.frames.peekLast();
+    }
+
+    /**
+     * Frame with the given record timestamp, the latest frame if no timestamp is given.
+     */
+    public synchronized MappedDataFrame getFrame(String recordDtg) {
+        if (recordDtg == null) {
+            return this.frames.peekLast();
+        }
+        Iterator<MappedDataFrame> iterator = this.frames.descendingIterator();
+        while (iterator.hasNext()) {
+            MappedDataFrame frame = iterator.next();
+            if (recordDtg.equals(frame.getRecordDtg())) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Frames with records between from and to, oldest first. Bounds are optional and inclusive.
+     *
+     * @throws java.time.format.DateTimeParseException if from or to is not a valid timestamp
+     */
+    public List<MappedDataFrame> getFrames(String from, String to) {
+        List<MappedDataFrame> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(this.frames);
+        }
+        if (from == null && to == null) {
+            return snapshot;
+        }
+        LocalDateTime start = FrameCatalog.parseBound(from, false);
+        LocalDateTime end = FrameCatalog.parseBound(to, true);
+        List<MappedDataFrame> matches = new ArrayList<>();
+        for (MappedDataFrame frame : snapshot) {
+            LocalDateTime dtg = frame.getRecordDtg() != null ?
+                    FrameCatalog.parseTimestamp(frame.getRecordDtg(), false) : null;
+            if (dtg != null && (start == null || !dtg.isBefore(start)) && (end == null || dtg.isBefore(end))) {
+                matches.add(frame);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Latest frame as headers and rows of the spatial granule, the timestamp and the values.
+     */
+    public Map<String, Object> getLatestFrame(List<String> columns) {
+        MappedDataFrame frame = this.getLatest();
+        if (frame == null) {
+            return null;
+        }
+        int[] selectedColumns = selectColumns(frame, columns);
+        List<String> headers = new ArrayList<>();
+        headers.add("spatialID");
+        headers.add("dtg");
+        for (int column : selectedColumns) {
+            headers.add(frame.getColumnNames()[column]);
+        }
+        List<Object[]> content = new ArrayList<>(frame.getRowCount());
+        for (int row = 0; row < frame.getRowCount(); row++) {
+            Object[] record = new Object[selectedColumns.length + 2];
+            record[0] = frame.getGranule(row);
+            record[1] = frame.getRecordDtg();
+            for (int i = 0; i < selectedColumns.length; i++) {
+                record[i + 2] = frame.getValueOrNull(row, selectedColumns[i]);
+            }
+            content.add(record);
+        }
+        Map<String, Object> latestFrame = new LinkedHashMap<>();
+        latestFrame.put("dtg", frame.getRecordDtg());
+        latestFrame.put("spatialGranularity", frame.getSpatialGranularity());
+        latestFrame.put("temporalGranularity", frame.getTemporalGranularity());
+        latestFrame.put("headers", headers);
+        latestFrame.put("content", content);
+        return latestFrame;
+    }
+
+    /**
+     * Values of a granule in each frame between from and to, missing values are null.
+     */
+    public List<Map<String, Object>> getGranuleSeries(String granule, List<String> columns, String from, String to) {
+        List<Map<String, Object>> series = new ArrayList<>();
+        for (MappedDataFrame frame : this.getFrames(from, to)) {
+            int row = frame.getRow(granule);
+            if (row < 0) {
+                continue;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int column : selectColumns(frame, columns)) {
+                values.put(frame.getColumnNames()[column], frame.getValueOrNull(row, column));
+            }
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("dtg", frame.getRecordDtg());
+            point.put("values", values);
+            series.add(point);
+        }
+        return series;
+    }
+
+    /**
+     * Values of every granule in the frame with the given record timestamp, the latest frame if none is given.
+     */
+    public Map<String, Object> getCrossSection(List<String> columns, String recordDtg) {
+        MappedDataFrame frame = this.getFrame(recordDtg);
+        if (frame == null) {
+            return null;
+        }
+        Map<String, Object> granules = new LinkedHashMap<>();
+        int[] selectedColumns = selectColumns(frame, columns);
+        for (int row = 0; row < frame.getRowCount(); row++) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int column : selectedColumns) {
+                values.put(frame.getColumnNames()[column], frame.getValueOrNull(row, column));
+            }
+            granules.put(frame.getGranule(row), values);
+        }
+        Map<String, Object> crossSection = new LinkedHashMap<>();
+        crossSection.put("dtg", frame.getRecordDtg());
+        crossSection.put("spatialGranularity", frame.getSpatialGranularity());
+        crossSection.put("temporalGranularity", frame.getTemporalGranularity());
+        crossSection.put("granules", granules);
+        return crossSection;
+    }
+
+    /**
+     * Value columns of the frame selected by the given columns.
+     */
+    public static int[] selectColumns(MappedDataFrame frame, List<String> columns) {
+        return selectColumns(frame.getColumnNames(), 0, columns);
+    }
+
+    /**
+     * Columns matching the given column names or feature type prefixes, every column if none are given.
+     * The first keyColumns columns, such as the spatial granule and the timestamp, are always selected.
+     */
+    public static int[] selectColumns(String[] columnNames, int keyColumns, List<String> columns) {
+        List<Integer> selectedColumns = new ArrayList<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            String columnName = columnNames[i];
+            if (i < keyColumns || columns == null || columns.isEmpty() || columns.contains(columnName) ||
+                    columns.stream().anyMatch(column -> columnName.startsWith(column + "_"))) {
+                selectedColumns.add(i);
+            }
+        }
+        return selectedColumns.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("frames", this.frames.size());
+        statistics.put("size", this.size);
+        statistics.put("maxFrames", this.maxFrames);
+        statistics.put("memoryBudget", this.memoryBudget);
+        statistics.put("evictedFrames", this.evictedFrames);
+        return statistics;
+    }
+}
@@ -0,0 +1,54 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.HashMap;
+
+/**
+ * Granules of a spatial granularity keyed by their uuid, loaded once per fusion tick.
+ */
+public class GranuleGeometryCache {
+
+    private String granularity;
+    private HashMap<String, SimpleFeature> granules = new HashMap<String, SimpleFeature>();
+
+    public GranuleGeometryCache(String granularity, SimpleFeatureCollection granuleSet, String uuid) {
+        this.granularity = granularity;
+        SimpleFeatureIterator iterator = granuleSet.features();
+        try {
+            while (iterator.hasNext()) {
+                SimpleFeature granule = iterator.next();
+                Object granuleId = granule.getAttribute(uuid);
+                if (granuleId != null) {
+                    granules.put(granuleId.toString(), granule);
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public SimpleFeature getGranule(String granuleId) {
+        return granules.get(granuleId);
+    }
+
+    public Geometry getGeometry(String granuleId) {
+        SimpleFeature granule = granules.get(granuleId);
+        if (granule != null) {
+            return (Geometry) granule.getDefaultGeometry();
+        } else {
+            return null;
+        }
+    }
+
+    public int size() {
+        return granules.size();
+    }
+}
@@ -0,0 +1,88 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Values of a single attribute of an aggregated collection indexed by granule id.
+ * Values that are missing or cannot be read as a number are kept as NaN.
+ */
+public class GranuleValueIndex {
+
+    private HashMap<String, Integer> positions = new HashMap<String, Integer>();
+    private String[] granuleIds;
+    private double[] values;
+    private int size = 0;
+
+    public GranuleValueIndex(SimpleFeatureCollection featureCollection, String uuid, String attributeName) {
+        int capacity = Math.max(featureCollection.size(), 1);
+        this.granuleIds = new String[capacity];
+        this.values = new double[capacity];
+
+        SimpleFeatureIterator iterator = featureCollection.features();
+        try {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                Object granuleId = feature.getAttribute(uuid);
+                if (granuleId != null) {
+                    this.put(granuleId.toString(), this.readValue(feature.getAttribute(attributeName)));
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    private double readValue(Object value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private void put(String granuleId, double value) {
+        Integer position = this.positions.get(granuleId);
+        if (position == null) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+                this.granuleIds = Arrays.copyOf(this.granuleIds, this.size * 2);
+            }
+            position = this.size++;
+            this.positions.put(granuleId, position);
+            this.granuleIds[position] = granuleId;
+        }
+        this.values[position] = value;
+    }
+
+    /**
+     * Position of the granule in the index or -1 if the collection has no feature for it.
+     */
+    public int indexOf(String granuleId) {
+        Integer position = this.positions.get(granuleId);
+        return position != null ? position : -1;
+    }
+
+    public boolean contains(String granuleId) {
+        return this.positions.containsKey(granuleId);
+    }
+
+    public double getValue(int position) {
+        return this.values[position];
+    }
+
+    public String getGranuleId(int position) {
+        return this.granuleIds[position];
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
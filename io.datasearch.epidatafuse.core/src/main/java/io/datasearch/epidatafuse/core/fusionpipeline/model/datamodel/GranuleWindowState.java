@@ -0,0 +1,182 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Running aggregate of the observations of a single granule inside a sliding time window.
+ * Observations are keyed by timestamp, a later observation with the same timestamp replaces the earlier one.
+ * Only observations in (windowStart, windowEnd) take part in the aggregate, observations after the window end are
+ * kept until the window reaches them, up to one window length ahead. Observations further ahead are dropped and the
+ * state is incomplete once the window reaches them.
+ */
+public class GranuleWindowState {
+
+    private TreeMap<Long, Double> observations = new TreeMap<Long, Double>();
+    private long windowStart = Long.MIN_VALUE;
+    private long windowEnd = Long.MIN_VALUE;
+    private double sum = 0.0;
+    private int count = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private boolean extremesStale = false;
+    //earliest observation dropped for being too far ahead of the window
+    private long droppedFrom = Long.MAX_VALUE;
+
+    public synchronized void put(long timestamp, double value) {
+        if (timestamp <= this.windowStart) {
+            return;
+        }
+        if (this.windowEnd > this.windowStart && timestamp - this.windowEnd >= this.windowEnd - this.windowStart) {
+            this.droppedFrom = Math.min(this.droppedFrom, timestamp);
+            return;
+        }
+        Double previous = this.observations.put(timestamp, value);
+        if (this.isInWindow(timestamp)) {
+            if (previous != null) {
+                this.remove(previous);
+            }
+            this.add(value);
+        }
+    }
+
+    /**
+     * Slide the window. Observations at or before the new start are evicted.
+     */
+    public synchronized void advance(long newWindowStart, long newWindowEnd) {
+        if (newWindowStart < this.windowStart || newWindowEnd < this.windowEnd) {
+            this.reset(newWindowStart, newWindowEnd);
+            return;
+        }
+
+        NavigableMap<Long, Double> evicted = this.observations.headMap(newWindowStart, true);
+        for (Map.Entry<Long, Double> observation : evicted.entrySet()) {
+            if (this.isInWindow(observation.getKey())) {
+                this.remove(observation.getValue());
+            }
+        }
+        evicted.clear();
+
+        //observations from the previous window end up to the new end enter the window
+        NavigableMap<Long, Double> admitted =
+                this.observations.subMap(Math.max(this.windowEnd, newWindowStart), true, newWindowEnd, false);
+        this.windowStart = newWindowStart;
+        this.windowEnd = newWindowEnd;
+        for (Double value : admitted.values()) {
+            this.add(value);
+        }
+    }
+
+    private void reset(long newWindowStart, long newWindowEnd) {
+        this.windowStart = newWindowStart;
+        this.windowEnd = newWindowEnd;
+        this.observations.headMap(newWindowStart, true).clear();
+        this.sum = 0.0;
+        this.count = 0;
+        this.extremesStale = true;
+        for (Double value : this.observations.subMap(newWindowStart, false, newWindowEnd, false).values()) {
+            this.sum += value;
+            this.count++;
+        }
+    }
+
+    private boolean isInWindow(long timestamp) {
+        return timestamp > this.windowStart && timestamp < this.windowEnd;
+    }
+
+    private void add(double value) {
+        this.sum += value;
+        this.count++;
+        if (!this.extremesStale) {
+            this.min = Double.isNaN(this.min) ? value : Math.min(this.min, value);
+            this.max = Double.isNaN(this.max) ? value : Math.max(this.max, value);
+        }
+    }
+
+    private void remove(double value) {
+        this.count--;
+        if (this.count == 0) {
+            //drop the accumulated rounding error whenever the window empties
+            this.sum = 0.0;
+            this.min = Double.NaN;
+            this.max = Double.NaN;
+            this.extremesStale = false;
+        } else {
+            this.sum -= value;
+            if (value == this.min || value == this.max) {
+                this.extremesStale = true;
+            }
+        }
+    }
+
+    private void refreshExtremes() {
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+        for (Double value : this.window().values()) {
+            this.min = Double.isNaN(this.min) ? value : Math.min(this.min, value);
+            this.max = Double.isNaN(this.max) ? value : Math.max(this.max, value);
+        }
+        this.extremesStale = false;
+    }
+
+    private NavigableMap<Long, Double> window() {
+        if (this.windowEnd <= this.windowStart) {
+            return new TreeMap<Long, Double>();
+        }
+        return this.observations.subMap(this.windowStart, false, this.windowEnd, false);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized double getSum() {
+        return sum;
+    }
+
+    public synchronized double getMean() {
+        return sum / count;
+    }
+
+    public synchronized double getMin() {
+        if (this.extremesStale) {
+            this.refreshExtremes();
+        }
+        return min;
+    }
+
+    public synchronized double getMax() {
+        if (this.extremesStale) {
+            this.refreshExtremes();
+        }
+        return max;
+    }
+
+    /**
+     * Latest observation inside the window or NaN.
+     */
+    public synchronized double getLastValue() {
+        Map.Entry<Long, Double> last = this.window().lastEntry();
+        return last != null ? last.getValue() : Double.NaN;
+    }
+
+    /**
+     * Timestamp of the latest observation inside the window or Long.MIN_VALUE.
+     */
+    public synchronized long getLastTimestamp() {
+        Map.Entry<Long, Double> last = this.window().lastEntry();
+        return last != null ? last.getKey() : Long.MIN_VALUE;
+    }
+
+    /**
+     * Whether the window holds every observation put into it, false once it reaches a dropped observation.
+     */
+    public synchronized boolean isComplete() {
+        return this.droppedFrom >= this.windowEnd;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.observations.isEmpty();
+    }
+}
@@ -15,16 +15,26 @@ public class TemporallyAggregatedCollection implements AggregatedCollection {
     private String spatialGranularity;
     private String temporalGranularity;
     private String dtg;
+    private GranuleValueIndex valueIndex;
 
     public TemporallyAggregatedCollection(SimpleFeatureType featureType, SimpleFeatureCollection featureCollection,
                                           String spatialGranularity,
                                           String temporalGranularity,
                                           String dtg) {
+        this(featureType, featureCollection, spatialGranularity, temporalGranularity, dtg, null);
+    }
+
+    public TemporallyAggregatedCollection(SimpleFeatureType featureType, SimpleFeatureCollection featureCollection,
+                                          String spatialGranularity,
+                                          String temporalGranularity,
+                                          String dtg,
+                                          GranuleValueIndex valueIndex) {
         this.featureType = featureType;
         this.featureCollection = featureCollection;
         this.spatialGranularity = spatialGranularity;
         this.temporalGranularity = temporalGranularity;
         this.dtg = dtg;
+        this.valueIndex = valueIndex;
     }
 
     public SimpleFeatureType getFeatureType() {
@@ -52,6 +62,10 @@ public class TemporallyAggregatedCollection implements AggregatedCollection {
         return dtg;
     }
 
+    public GranuleValueIndex getValueIndex() {
+        return valueIndex;
+    }
+
     @Override
     public ArrayList<String> getAttributeList() {
         return null;
@@ -0,0 +1,85 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * STRtree envelope index over the base granules of a granularity mapping.
+ * Candidates are returned in the iteration order of the base granule collection so that the mappings stay the same
+ * as a full scan of the collection.
+ */
+public class BaseGranuleIndex {
+
+    private STRtree index;
+
+    public BaseGranuleIndex(SimpleFeatureCollection baseGranules, String baseUUID) {
+        this.index = new STRtree();
+        SimpleFeatureIterator featureIt = baseGranules.features();
+        try {
+            int position = 0;
+            while (featureIt.hasNext()) {
+                SimpleFeature next = featureIt.next();
+                Geometry baseGeometry = (Geometry) next.getDefaultGeometry();
+                if (baseGeometry != null) {
+                    IndexedGranule granule =
+                            new IndexedGranule(position, next.getAttribute(baseUUID).toString(), baseGeometry);
+                    this.index.insert(baseGeometry.getEnvelopeInternal(), granule);
+                }
+                position++;
+            }
+        } finally {
+            featureIt.close();
+        }
+        this.index.build();
+    }
+
+    /**
+     * Returns the base granules whose envelopes intersect the given envelope.
+     *
+     * @param envelope search envelope
+     * @return candidate granules in base collection order
+     */
+    public List<IndexedGranule> query(Envelope envelope) {
+        List<IndexedGranule> candidates = new ArrayList<>();
+        for (Object item : this.index.query(envelope)) {
+            candidates.add((IndexedGranule) item);
+        }
+        candidates.sort(Comparator.comparingInt(IndexedGranule::getPosition));
+        return candidates;
+    }
+
+    /**
+     * Base granule entry of the index.
+     */
+    public static class IndexedGranule {
+        private int position;
+        private String granuleId;
+        private Geometry geometry;
+
+        public IndexedGranule(int position, String granuleId, Geometry geometry) {
+            this.position = position;
+            this.granuleId = granuleId;
+            this.geometry = geometry;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public String getGranuleId() {
+            return granuleId;
+        }
+
+        public Geometry getGeometry() {
+            return geometry;
+        }
+    }
+}
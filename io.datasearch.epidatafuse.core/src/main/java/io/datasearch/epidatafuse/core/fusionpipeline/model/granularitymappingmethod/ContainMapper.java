@@ -4,6 +4,8 @@ import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationma
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.opengis.feature.simple.SimpleFeature;
 
 import java.util.ArrayList;
@@ -21,11 +23,12 @@ public class ContainMapper {
                                                                 SimpleFeatureCollection baseGranuleSet, String baseUUID,
                                                                 String targetUUID) {
         SpatialGranularityRelationMap spatialMap = new SpatialGranularityRelationMap();
+        BaseGranuleIndex baseIndex = new BaseGranuleIndex(baseGranuleSet, baseUUID);
         SimpleFeatureIterator featureIt = targetGranuleSet.features();
         try {
             while (featureIt.hasNext()) {
                 SimpleFeature next = featureIt.next();
-                ArrayList<String> containsMap = contains(next, baseGranuleSet, baseUUID);
+                ArrayList<String> containsMap = contains(next, baseIndex);
                 spatialMap.addTargetToBasesMapping(next.getAttribute(targetUUID).toString(), containsMap);
             }
         } finally {
@@ -34,16 +37,14 @@ public class ContainMapper {
         return spatialMap;
     }
 
-    public static ArrayList<String> contains(SimpleFeature targetGranule, SimpleFeatureCollection baseGranules,
-                                             String baseUUID) {
+    public static ArrayList<String> contains(SimpleFeature targetGranule, BaseGranuleIndex baseIndex) {
         ArrayList<String> nearestNeighbors = new ArrayList<>();
-        SimpleFeatureIterator featureIt = baseGranules.features();
-        while (featureIt.hasNext()) {
-            SimpleFeature next = featureIt.next();
-            Geometry baseGeometry = (Geometry) next.getDefaultGeometry();
-            boolean contains = ((Geometry) targetGranule.getDefaultGeometry()).covers(baseGeometry);
+        Geometry targetGeometry = (Geometry) targetGranule.getDefaultGeometry();
+        PreparedGeometry preparedTarget = PreparedGeometryFactory.prepare(targetGeometry);
+        for (BaseGranuleIndex.IndexedGranule candidate : baseIndex.query(targetGeometry.getEnvelopeInternal())) {
+            boolean contains = preparedTarget.covers(candidate.getGeometry());
             if (contains) {
-                nearestNeighbors.add(next.getAttribute(baseUUID).toString());
+                nearestNeighbors.add(candidate.getGranuleId());
             }
         }
         return nearestNeighbors;
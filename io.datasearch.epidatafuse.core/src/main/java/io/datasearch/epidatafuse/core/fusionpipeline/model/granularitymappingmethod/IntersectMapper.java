@@ -4,6 +4,8 @@ import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationma
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.opengis.feature.simple.SimpleFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,11 +26,12 @@ public class IntersectMapper {
                                                                 SimpleFeatureCollection baseGranuleSet, String baseUUID,
                                                                 String targetUUID) {
         SpatialGranularityRelationMap spatialMap = new SpatialGranularityRelationMap();
+        BaseGranuleIndex baseIndex = new BaseGranuleIndex(baseGranuleSet, baseUUID);
         SimpleFeatureIterator featureIt = targetGranuleSet.features();
         try {
             while (featureIt.hasNext()) {
                 SimpleFeature next = featureIt.next();
-                ArrayList<String> intersectMap = intersect(next, baseGranuleSet, baseUUID);
+                ArrayList<String> intersectMap = intersect(next, baseIndex);
                 spatialMap.addTargetToBasesMapping(next.getAttribute(targetUUID).toString(), intersectMap);
                 String msg = next.getAttribute(targetUUID) + " " + intersectMap.size();
                 logger.info(msg);
@@ -39,16 +42,14 @@ public class IntersectMapper {
         return spatialMap;
     }
 
-    public static ArrayList<String> intersect(SimpleFeature targetGranule, SimpleFeatureCollection baseGranules,
-                                             String baseUUID) {
+    public static ArrayList<String> intersect(SimpleFeature targetGranule, BaseGranuleIndex baseIndex) {
         ArrayList<String> intersectNeighbors = new ArrayList<>();
-        SimpleFeatureIterator featureIt = baseGranules.features();
-        while (featureIt.hasNext()) {
-            SimpleFeature next = featureIt.next();
-            Geometry baseGeometry = (Geometry) next.getDefaultGeometry();
-            boolean intersects = ((Geometry) targetGranule.getDefaultGeometry()).intersects(baseGeometry);
+        Geometry targetGeometry = (Geometry) targetGranule.getDefaultGeometry();
+        PreparedGeometry preparedTarget = PreparedGeometryFactory.prepare(targetGeometry);
+        for (BaseGranuleIndex.IndexedGranule candidate : baseIndex.query(targetGeometry.getEnvelopeInternal())) {
+            boolean intersects = preparedTarget.intersects(candidate.getGeometry());
             if (intersects) {
-                intersectNeighbors.add(next.getAttribute(baseUUID).toString());
+                intersectNeighbors.add(candidate.getGranuleId());
             }
         }
         return intersectNeighbors;
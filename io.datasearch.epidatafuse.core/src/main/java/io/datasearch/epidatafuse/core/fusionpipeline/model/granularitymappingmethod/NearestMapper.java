@@ -1,24 +1,24 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod;
 
-import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.AttributeUtil;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.SpatialGranularityRelationMap;
 
-import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
-import org.locationtech.geomesa.process.query.KNearestNeighborSearchProcess;
-import org.locationtech.geomesa.utils.interop.SimpleFeatureTypes;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * nearest mapping method
@@ -29,13 +29,17 @@ public class NearestMapper {
     public static final String MAPPER_NAME = "NearestNeighbours";
     public static final String ARG_NEIGHBORS = "neighbors";
     public static final String ARG_MAX_DISTANCE = "maxDistance";
+    public static final String ARG_PARALLEL = "parallel";
     private static final Integer DEFAULT_NEIGHBORS = 2;
     private static final Double DEFAULT_MAX_DISTANCE = 10000.0;
+    private static final Boolean DEFAULT_PARALLEL = false;
+    private static final double EARTH_RADIUS = 6371008.8;
     private static final Map<String, Object> ARGUMENTS = new HashMap<>();
 
     static {
         ARGUMENTS.put(ARG_NEIGHBORS, DEFAULT_NEIGHBORS);
         ARGUMENTS.put(ARG_MAX_DISTANCE, DEFAULT_MAX_DISTANCE);
+        ARGUMENTS.put(ARG_PARALLEL, DEFAULT_PARALLEL);
     }
 
 
@@ -56,6 +60,7 @@ public class NearestMapper {
                                                                 String targetUUID) {
         int neighbors;
         double maxDistance;
+        boolean parallel;
         if (mappingArguments.get(ARG_NEIGHBORS) != null) {
             neighbors = Integer.parseInt(mappingArguments.get(ARG_NEIGHBORS).toString());
         } else {
@@ -66,91 +71,174 @@ public class NearestMapper {
         } else {
             maxDistance = DEFAULT_MAX_DISTANCE;
         }
+        if (mappingArguments.get(ARG_PARALLEL) != null) {
+            parallel = Boolean.parseBoolean(mappingArguments.get(ARG_PARALLEL).toString());
+        } else {
+            parallel = DEFAULT_PARALLEL;
+        }
 
-        SimpleFeatureCollection targetGranuleSetAsPoints = convertGeometryToPoints(targetGranuleSet, targetUUID);
-        SimpleFeatureCollection baseGranuleSetAsPoints = convertGeometryToPoints(baseGranuleSet, baseUUID);
+        List<GranuleCentroid> targetPoints = convertGeometryToPoints(targetGranuleSet, targetUUID);
+        List<GranuleCentroid> basePoints = convertGeometryToPoints(baseGranuleSet, baseUUID);
 
-        SpatialGranularityRelationMap spatialMap = new SpatialGranularityRelationMap();
-//        SimpleFeatureIterator featureIt = targetGranuleSet.features();
-        SimpleFeatureIterator featureIt = targetGranuleSetAsPoints.features();
+        //the index is built once over all base centroids and only read afterwards, so it can be shared by threads
+        STRtree baseIndex = new STRtree();
+        for (GranuleCentroid basePoint : basePoints) {
+            baseIndex.insert(basePoint.getPoint().getEnvelopeInternal(), basePoint);
+        }
+        baseIndex.build();
 
-        try {
-            while (featureIt.hasNext()) {
-                SimpleFeature targetPoint = featureIt.next();
-                ArrayList<String> nearestNeighbors =
-                        getNearestPoints(targetPoint, baseGranuleSetAsPoints, neighbors, maxDistance, baseUUID);
-                spatialMap.addTargetToBasesMapping((String) targetPoint.getAttribute(targetUUID), nearestNeighbors);
-                String msg = targetPoint.getAttribute(targetUUID) + " " + nearestNeighbors.size();
-                logger.info(msg);
-            }
-        } finally {
-            featureIt.close();
+        IntStream targetIndexes = IntStream.range(0, targetPoints.size());
+        if (parallel) {
+            targetIndexes = targetIndexes.parallel();
+        }
+        List<ArrayList<String>> nearestNeighborLists = targetIndexes
+                .mapToObj(i -> getNearestPoints(targetPoints.get(i), baseIndex, neighbors, maxDistance))
+                .collect(Collectors.toList());
+
+        SpatialGranularityRelationMap spatialMap = new SpatialGranularityRelationMap();
+        for (int i = 0; i < targetPoints.size(); i++) {
+            String targetGranuleId = targetPoints.get(i).getGranuleId();
+            ArrayList<String> nearestNeighbors = nearestNeighborLists.get(i);
+            spatialMap.addTargetToBasesMapping(targetGranuleId, nearestNeighbors);
+            String msg = targetGranuleId + " " + nearestNeighbors.size();
+            logger.info(msg);
         }
         return spatialMap;
     }
 
     /**
-     * Given a reference point returns the nearest neighbors.
+     * Given a reference point returns the nearest neighbors, closest first.
      *
-     * @param targetPoint
-     * @param pointList
-     * @param neighbors
-     * @param maxDistance
-     * @return
+     * @param targetPoint reference point
+     * @param baseIndex   index of base granule centroids
+     * @param neighbors   maximum number of neighbors
+     * @param maxDistance maximum distance to a neighbor in meters
+     * @return ids of the nearest base granules
      */
-    private static ArrayList<String> getNearestPoints(
-            SimpleFeature targetPoint, SimpleFeatureCollection pointList,
-            int neighbors, Double maxDistance, String baseUUID) {
+    private static ArrayList<String> getNearestPoints(GranuleCentroid targetPoint, STRtree baseIndex,
+                                                      int neighbors, double maxDistance) {
+
+        Point target = targetPoint.getPoint();
+        List<Object> candidates = baseIndex.query(searchEnvelope(target, maxDistance));
+
+        List<NeighborDistance> inRange = new ArrayList<>();
+        for (Object candidate : candidates) {
+            GranuleCentroid basePoint = (GranuleCentroid) candidate;
+            double distance = distanceInMeters(target, basePoint.getPoint());
+            if (distance <= maxDistance) {
+                inRange.add(new NeighborDistance(basePoint, distance));
+            }
+        }
+        inRange.sort(Comparator.comparingDouble(NeighborDistance::getDistance)
+                .thenComparingInt(neighbor -> neighbor.getCentroid().getPosition()));
 
         ArrayList<String> nearestNeighbors = new ArrayList<>();
-//        if(targetPoint.getDefaultGeometryProperty().getType() )
-        SimpleFeatureCollection targetPointCollection = DataUtilities.collection(targetPoint);
-        KNearestNeighborSearchProcess kNNProcess = new KNearestNeighborSearchProcess();
-        SimpleFeatureCollection neighborPoints = kNNProcess.execute(targetPointCollection, pointList,
-                neighbors, 50000.0, maxDistance);
-        SimpleFeatureIterator featureIt = neighborPoints.features();
+        for (int i = 0; i < inRange.size() && i < neighbors; i++) {
+            nearestNeighbors.add(inRange.get(i).getCentroid().getGranuleId());
+        }
+        return nearestNeighbors;
+    }
+
+    /**
+     * Bounding box in degrees containing every point within maxDistance meters of the given point.
+     */
+    private static Envelope searchEnvelope(Point point, double maxDistance) {
+        double latDelta = Math.toDegrees(maxDistance / EARTH_RADIUS);
+        double maxLatitude = Math.abs(point.getY()) + latDelta;
+        double lonDelta;
+        if (maxLatitude >= 90.0) {
+            lonDelta = 180.0;
+        } else {
+            lonDelta = Math.min(180.0, latDelta / Math.cos(Math.toRadians(maxLatitude)));
+        }
+        return new Envelope(point.getX() - lonDelta, point.getX() + lonDelta,
+                point.getY() - latDelta, point.getY() + latDelta);
+    }
+
+    /**
+     * Great circle distance between two WGS84 points in meters.
+     */
+    private static double distanceInMeters(Point p1, Point p2) {
+        double lat1 = Math.toRadians(p1.getY());
+        double lat2 = Math.toRadians(p2.getY());
+        double dLat = lat2 - lat1;
+        double dLon = Math.toRadians(p2.getX() - p1.getX());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    public static Map<String, Object> getArguments() {
+        return ARGUMENTS;
+    }
+
+    private static List<GranuleCentroid> convertGeometryToPoints(SimpleFeatureCollection geomCollection,
+                                                                 String uuid) {
+        List<GranuleCentroid> pointCollection = new ArrayList<>();
+        SimpleFeatureIterator featureIt = geomCollection.features();
         try {
+            int position = 0;
             while (featureIt.hasNext()) {
-                SimpleFeature sf = featureIt.next();
-                //logger.info(featureID + " : " + sf.getID());
-                nearestNeighbors.add((String) sf.getAttribute(baseUUID));
+                SimpleFeature next = featureIt.next();
+                Geometry geom = (Geometry) next.getDefaultGeometry();
+                if (geom != null) {
+                    Point centroidPoint = geom.getCentroid();
+                    String featureID = (String) next.getAttribute(uuid);
+                    pointCollection.add(new GranuleCentroid(position, featureID, centroidPoint));
+                }
+                position++;
             }
-            return nearestNeighbors;
         } finally {
             featureIt.close();
         }
+        return pointCollection;
     }
 
-    public static Map<String, Object> getArguments() {
-        return ARGUMENTS;
-    }
+    /**
+     * Centroid of a granule.
+     */
+    private static class GranuleCentroid {
+        private int position;
+        private String granuleId;
+        private Point point;
+
+        GranuleCentroid(int position, String granuleId, Point point) {
+            this.position = position;
+            this.granuleId = granuleId;
+            this.point = point;
+        }
 
-    private static SimpleFeatureCollection convertGeometryToPoints(SimpleFeatureCollection geomCollection,
-                                                                   String uuid) {
-        ArrayList<SimpleFeature> pointCollectionArray = new ArrayList<SimpleFeature>();
-        SimpleFeatureIterator featureIt = geomCollection.features();
+        int getPosition() {
+            return position;
+        }
 
-        StringBuilder tempFeatureAttributes = new StringBuilder();
-        tempFeatureAttributes.append(AttributeUtil.getAttribute(uuid, true, "String"));
-        tempFeatureAttributes.append(",");
-        tempFeatureAttributes.append(AttributeUtil.getAttribute("geom", false, "Point"));
+        String getGranuleId() {
+            return granuleId;
+        }
 
-        SimpleFeatureType tempSimpleFeatureType = SimpleFeatureTypes.createType("temptype",
-                tempFeatureAttributes.toString());
+        Point getPoint() {
+            return point;
+        }
+    }
 
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(tempSimpleFeatureType);
+    /**
+     * Base granule centroid with its distance to a target point.
+     */
+    private static class NeighborDistance {
+        private GranuleCentroid centroid;
+        private double distance;
 
-        while (featureIt.hasNext()) {
-            SimpleFeature next = featureIt.next();
-            Geometry geom = (Geometry) next.getDefaultGeometry();
-            Point centroidPoint = geom.getCentroid();
-            String featureID = (String) next.getAttribute(uuid);
-            builder.add(featureID);
-            builder.add(centroidPoint);
-            SimpleFeature temp = builder.buildFeature(featureID);
-            pointCollectionArray.add(temp);
+        NeighborDistance(GranuleCentroid centroid, double distance) {
+            this.centroid = centroid;
+            this.distance = distance;
+        }
+
+        GranuleCentroid getCentroid() {
+            return centroid;
+        }
+
+        double getDistance() {
+            return distance;
         }
-        SimpleFeatureCollection pointCollection = DataUtilities.collection(pointCollectionArray);
-        return pointCollection;
     }
 }
@@ -27,6 +27,7 @@ public class TemporalRelationship {
 
     private static final List<String> TEMPORAL_UNITS_LIST;
     private static Table<String, String, Integer> relationshipTable = HashBasedTable.create();
+    //milliseconds
     private static final Map<String, Long> GRANULARITY_MAP;
     private static final HashMap<String, Integer> GRANULARITY_MAP_HOURS;
 
@@ -49,7 +50,7 @@ public class TemporalRelationship {
         GRANULARITY_MAP = new HashMap<>();
         GRANULARITY_MAP.put(MINUTE, 1000 * 60L);
         GRANULARITY_MAP.put(HOUR, 1000 * 60 * 60L);
-        GRANULARITY_MAP.put(DAY, 1000 * 60 * 60 * 2L);
+        GRANULARITY_MAP.put(DAY, 1000 * 60 * 60 * 24L);
         GRANULARITY_MAP.put(WEEK, 1000 * 60 * 60 * 24 * 7L);
         GRANULARITY_MAP.put(MONTH, 1000 * 60 * 60 * 24 * 30L);
         GRANULARITY_MAP.put(YEAR, 1000 * 60 * 60 * 24 * 365L);
@@ -115,8 +116,15 @@ public class TemporalRelationship {
         return value;
     }
 
-    public static long getGranularityToSeconds(String granularity) {
-        return GRANULARITY_MAP.get(granularity);
+    /**
+     * Duration of a temporal granularity in milliseconds. Months are 30 days and years 365 days.
+     */
+    public static long getGranularityDuration(String granularity) {
+        Long duration = GRANULARITY_MAP.get(granularity);
+        if (duration == null) {
+            throw new IllegalArgumentException("Unknown temporal granularity " + granularity);
+        }
+        return duration;
     }
 
     public static List<String> getTemporalUnitsList() {
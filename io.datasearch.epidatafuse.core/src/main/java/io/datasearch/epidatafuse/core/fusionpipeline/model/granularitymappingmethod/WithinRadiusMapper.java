@@ -3,6 +3,7 @@ package io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingme
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationmap.SpatialGranularityRelationMap;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.feature.simple.SimpleFeature;
 
@@ -38,11 +39,12 @@ public class WithinRadiusMapper {
                                                                      String baseUUID,
                                                                      String targetUUID) {
         SpatialGranularityRelationMap spatialMap = new SpatialGranularityRelationMap();
+        BaseGranuleIndex baseIndex = new BaseGranuleIndex(baseGranuleSet, baseUUID);
         SimpleFeatureIterator featureIt = targetGranuleSet.features();
         try {
             while (featureIt.hasNext()) {
                 SimpleFeature next = featureIt.next();
-                ArrayList<String> withinRadiusList = findWithInRadius(next, baseGranuleSet, baseUUID);
+                ArrayList<String> withinRadiusList = findWithInRadius(next, baseIndex);
                 spatialMap.addTargetToBasesMapping(next.getAttribute(targetUUID).toString(), withinRadiusList);
             }
         } finally {
@@ -51,17 +53,16 @@ public class WithinRadiusMapper {
         return spatialMap;
     }
 
-    public static ArrayList<String> findWithInRadius(SimpleFeature targetGranule,
-                                                     SimpleFeatureCollection baseGranules, String baseUUID) {
+    public static ArrayList<String> findWithInRadius(SimpleFeature targetGranule, BaseGranuleIndex baseIndex) {
         ArrayList<String> nearestNeighbors = new ArrayList<>();
-        SimpleFeatureIterator featureIt = baseGranules.features();
-        while (featureIt.hasNext()) {
-            SimpleFeature next = featureIt.next();
-            Geometry baseGeometry = (Geometry) next.getDefaultGeometry();
-            boolean contains = ((Geometry) targetGranule.getDefaultGeometry()).
-                    isWithinDistance(baseGeometry, DEFAULT_RADIUS);
+        Geometry targetGeometry = (Geometry) targetGranule.getDefaultGeometry();
+        //granules within the radius have envelopes intersecting the target envelope expanded by the radius
+        Envelope searchEnvelope = new Envelope(targetGeometry.getEnvelopeInternal());
+        searchEnvelope.expandBy(DEFAULT_RADIUS);
+        for (BaseGranuleIndex.IndexedGranule candidate : baseIndex.query(searchEnvelope)) {
+            boolean contains = targetGeometry.isWithinDistance(candidate.getGeometry(), DEFAULT_RADIUS);
             if (contains) {
-                nearestNeighbors.add(next.getAttribute(baseUUID).toString());
+                nearestNeighbors.add(candidate.getGranuleId());
             }
         }
         return nearestNeighbors;
@@ -3,6 +3,7 @@ package io.datasearch.epidatafuse.core.fusionpipeline.model.granularityrelationm
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * spatial map class
@@ -11,8 +12,15 @@ public class SpatialGranularityRelationMap {
 
     private Map<String, ArrayList<String>> targetToBasesMap;
 
+    //spatial aggregation weights of each (target, base) pair, valid for weightMethod only
+    private Map<String, HashMap<String, Double>> targetToBaseWeights;
+    private volatile String weightMethod;
+    //bumped when the weights are invalidated, weights computed in an older generation are not cached
+    private volatile long weightGeneration = 0;
+
     public SpatialGranularityRelationMap() {
         this.targetToBasesMap = new HashMap<>();
+        this.targetToBaseWeights = new ConcurrentHashMap<>();
     }
 
     public void addTargetToBasesMapping(String targetGranuleId, ArrayList<String> baseGranuleIdSet) {
@@ -27,4 +35,51 @@ public class SpatialGranularityRelationMap {
     public Map<String, ArrayList<String>> getMap() {
         return this.targetToBasesMap;
     }
+
+    /**
+     * Cache the weights of the base granules of a target granule.
+     *
+     * @param targetGranuleId   target granule
+     * @param aggregationMethod aggregation method the weights are computed for
+     * @param generation        weight generation read before the weights were computed
+     * @param baseWeights       base granule id to weight map
+     * @return false if the weights were invalidated meanwhile and are not cached
+     */
+    public synchronized boolean addWeights(String targetGranuleId, String aggregationMethod, long generation,
+                                           HashMap<String, Double> baseWeights) {
+        if (generation != this.weightGeneration) {
+            return false;
+        }
+        if (!aggregationMethod.equals(this.weightMethod)) {
+            this.targetToBaseWeights.clear();
+            this.weightMethod = aggregationMethod;
+        }
+        this.targetToBaseWeights.put(targetGranuleId, baseWeights);
+        return true;
+    }
+
+    public long getWeightGeneration() {
+        return this.weightGeneration;
+    }
+
+    /**
+     * Returns the precomputed weights of the base granules of a target granule.
+     *
+     * @param targetGranuleId   target granule
+     * @param aggregationMethod aggregation method the weights are required for
+     * @return base granule id to weight map or null if the weights are not computed for the given method
+     */
+    public HashMap<String, Double> getWeights(String targetGranuleId, String aggregationMethod) {
+        if (aggregationMethod != null && aggregationMethod.equals(this.weightMethod)) {
+            return this.targetToBaseWeights.get(targetGranuleId);
+        } else {
+            return null;
+        }
+    }
+
+    public synchronized void invalidateWeights() {
+        this.weightGeneration++;
+        this.targetToBaseWeights.clear();
+        this.weightMethod = null;
+    }
 }
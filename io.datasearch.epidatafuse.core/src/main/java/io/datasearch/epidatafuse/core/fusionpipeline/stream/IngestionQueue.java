@@ -0,0 +1,352 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.siddhi.core.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of streamed events of a feature type, drained by writer threads so that slow datastore writes do not
+ * stall the Siddhi runtime. Events that do not fit are handled according to the overflow policy.
+ */
+public class IngestionQueue {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionQueue.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_DRAIN_SIZE = 1000;
+    private static final long POLL_TIMEOUT = 200;
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+    private static final long REPLAY_RETRY_DELAY = 5000;
+    private final String name;
+    private final BlockingQueue<Event> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int writerThreadCount;
+    private final Consumer<Event[]> consumer;
+    private final Path spillFile;
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private BufferedWriter spillWriter;
+    private List<Thread> writerThreads = new ArrayList<>();
+    private volatile boolean running = false;
+    //spilled events are not replayed before this time after a replay failed to write some of them
+    private volatile long nextReplayTime = 0;
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong pendingSpillCount = new AtomicLong();
+    private final AtomicLong failedWriteCount = new AtomicLong();
+
+    /**
+     * What to do with an event when the queue is full.
+     */
+    public enum OverflowPolicy {
+        //wait for space, slowing down the source
+        BLOCK,
+        //evict the oldest queued event
+        DROP_OLDEST,
+        //append the event to a local file, replayed once the queue drains
+        SPILL;
+
+        public static OverflowPolicy fromString(String policy) {
+            return policy != null ? OverflowPolicy.valueOf(policy.trim().toUpperCase(Locale.ROOT)) : BLOCK;
+        }
+    }
+
+    public IngestionQueue(String name, int capacity, int writerThreadCount, OverflowPolicy overflowPolicy,
+                          Path spillFile, Consumer<Event[]> consumer) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThreadCount = writerThreadCount;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        this.consumer = consumer;
+    }
+
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        if (Files.exists(this.spillFile) || Files.exists(this.getReplayFile())) {
+            //events spilled before the last shutdown
+            this.pendingSpillCount.incrementAndGet();
+        }
+        for (int i = 0; i < this.writerThreadCount; i++) {
+            Thread thread = new Thread(this::drain, this.name + "-ingestion-writer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            this.writerThreads.add(thread);
+        }
+    }
+
+    /**
+     * Stop accepting events and wait for the writer threads to write the queued ones.
+     */
+    public synchronized void shutdown() {
+        this.running = false;
+        for (Thread thread : this.writerThreads) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error(e.getMessage());
+            }
+        }
+        this.writerThreads.clear();
+        this.closeSpillWriter();
+        if (!this.queue.isEmpty()) {
+            logger.error(this.name + ": " + this.queue.size() + " queued events were not written");
+        }
+    }
+
+    public void offer(Event[] events) {
+        for (Event event : events) {
+            if (this.queue.offer(event)) {
+                this.enqueuedCount.incrementAndGet();
+                continue;
+            }
+            switch (this.overflowPolicy) {
+                case DROP_OLDEST:
+                    while (!this.queue.offer(event)) {
+                        if (this.queue.poll() != null) {
+                            this.droppedCount.incrementAndGet();
+                        }
+                    }
+                    this.enqueuedCount.incrementAndGet();
+                    break;
+                case SPILL:
+                    this.spill(event);
+                    break;
+                default:
+                    try {
+                        this.queue.put(event);
+                        this.enqueuedCount.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        this.droppedCount.incrementAndGet();
+                    }
+            }
+        }
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>();
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Event first = this.queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch, MAX_DRAIN_SIZE - 1);
+                    Event[] events = batch.toArray(new Event[0]);
+                    if (!this.write(events)) {
+                        if (this.overflowPolicy == OverflowPolicy.SPILL) {
+                            this.spill(events);
+                        } else {
+                            this.droppedCount.addAndGet(events.length);
+                        }
+                    }
+                    batch.clear();
+                }
+                if (this.queue.isEmpty() && this.pendingSpillCount.get() > 0 &&
+                        System.currentTimeMillis() >= this.nextReplayTime) {
+                    this.replaySpill();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write events through the consumer, returns false if they were not written.
+     */
+    private boolean write(Event[] events) {
+        try {
+            this.consumer.accept(events);
+            this.writtenCount.addAndGet(events.length);
+            return true;
+        } catch (Throwable e) {
+            this.failedWriteCount.incrementAndGet();
+            logger.error(this.name + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Take the events of a batch that the consumer accepted but failed to write later on. With the spill policy the
+     * events are spilled and replayed after a delay, otherwise they are left to the consumer to retry.
+     *
+     * @return true if the events were taken
+     */
+    public boolean takeFailedWrite(Event[] events) {
+        this.failedWriteCount.incrementAndGet();
+        if (this.overflowPolicy != OverflowPolicy.SPILL) {
+            return false;
+        }
+        this.spill(events);
+        this.nextReplayTime = System.currentTimeMillis() + REPLAY_RETRY_DELAY;
+        if (!this.running) {
+            //the writer threads are gone, nothing closes the spill file later
+            this.closeSpillWriter();
+        }
+        return true;
+    }
+
+    private void spill(Event[] events) {
+        for (Event event : events) {
+            this.spill(event);
+        }
+    }
+
+    private void spill(Event event) {
+        this.spillLock.lock();
+        try {
+            if (this.spillWriter == null) {
+                Files.createDirectories(this.spillFile.getParent());
+                this.spillWriter = Files.newBufferedWriter(this.spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            Object[] line = new Object[event.getData().length + 1];
+            line[0] = event.getTimestamp();
+            System.arraycopy(event.getData(), 0, line, 1, event.getData().length);
+            this.spillWriter.write(MAPPER.writeValueAsString(line));
+            this.spillWriter.newLine();
+            this.spilledCount.incrementAndGet();
+            this.pendingSpillCount.incrementAndGet();
+        } catch (IOException e) {
+            this.droppedCount.incrementAndGet();
+            logger.error(this.name + ": could not spill event, " + e.getMessage());
+        } finally {
+            this.spillLock.unlock();
+        }
+    }
+
+    private Path getReplayFile() {
+        return this.spillFile.resolveSibling(this.spillFile.getFileName() + ".replay");
+    }
+
+    /**
+     * Move the spill file aside and write its events, new overflow goes to a fresh spill file meanwhile.
+     * A replay file left by an interrupted replay is written first. Batches that fail to be written are spilled
+     * again and retried after a delay, the replay file is only deleted once each of its events is written or
+     * spilled again.
+     */
+    private void replaySpill() {
+        if (!this.replayLock.tryLock()) {
+            return;
+        }
+        try {
+            Path replayFile = this.getReplayFile();
+            if (!Files.exists(replayFile)) {
+                this.spillLock.lock();
+                try {
+                    this.closeSpillWriter();
+                    this.pendingSpillCount.set(0);
+                    if (!Files.exists(this.spillFile)) {
+                        return;
+                    }
+                    Files.move(this.spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    this.spillLock.unlock();
+                }
+            }
+            List<Event> batch = new ArrayList<>();
+            boolean failed = false;
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Object[] values = MAPPER.readValue(line, Object[].class);
+                    Object[] data = new Object[values.length - 1];
+                    System.arraycopy(values, 1, data, 0, data.length);
+                    batch.add(new Event(((Number) values[0]).longValue(), data));
+                    if (batch.size() == MAX_DRAIN_SIZE) {
+                        failed |= !this.replay(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                failed |= !this.replay(batch);
+            }
+            if (failed) {
+                this.nextReplayTime = System.currentTimeMillis() + REPLAY_RETRY_DELAY;
+            }
+            Files.delete(replayFile);
+        } catch (IOException e) {
+            logger.error(this.name + ": could not replay spilled events, " + e.getMessage());
+        } finally {
+            this.replayLock.unlock();
+        }
+    }
+
+    //returns false if the batch was spilled again
+    private boolean replay(List<Event> batch) throws IOException {
+        Event[] events = batch.toArray(new Event[0]);
+        if (this.write(events)) {
+            this.replayedCount.addAndGet(events.length);
+            return true;
+        }
+        long dropped = this.droppedCount.get();
+        this.spill(events);
+        if (this.droppedCount.get() != dropped) {
+            //the replay file still holds the events that could not be spilled again
+            throw new IOException("could not spill failed events again");
+        }
+        return false;
+    }
+
+    private void closeSpillWriter() {
+        this.spillLock.lock();
+        try {
+            if (this.spillWriter != null) {
+                this.spillWriter.close();
+                this.spillWriter = null;
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        } finally {
+            this.spillLock.unlock();
+        }
+    }
+
+    public int getDepth() {
+        return this.queue.size();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("overflowPolicy", this.overflowPolicy.name().toLowerCase(Locale.ROOT));
+        statistics.put("queueDepth", this.queue.size());
+        statistics.put("remainingCapacity", this.queue.remainingCapacity());
+        statistics.put("enqueued", this.enqueuedCount.get());
+        statistics.put("written", this.writtenCount.get());
+        statistics.put("dropped", this.droppedCount.get());
+        statistics.put("spilled", this.spilledCount.get());
+        statistics.put("pendingSpilled", this.pendingSpillCount.get());
+        statistics.put("replayed", this.replayedCount.get());
+        statistics.put("failedWrites", this.failedWriteCount.get());
+        return statistics;
+    }
+}
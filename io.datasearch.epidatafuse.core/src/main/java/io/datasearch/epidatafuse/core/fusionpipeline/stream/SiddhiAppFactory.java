@@ -1,11 +1,14 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.stream;
 
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.AttributeUtil;
 import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.SimpleFeatureTypeSchema;
 import io.siddhi.core.SiddhiAppRuntime;
 import io.siddhi.core.SiddhiManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,48 +21,175 @@ public class SiddhiAppFactory {
     private static final String URL_KEY = "url";
     private static final String REQUEST_FREQUENCY = "request_frequency";
     private static final String ATTRIBUTE_NAME_KEY = "attribute_name";
+    private static final String ATTRIBUTE_TYPE_KEY = "attribute_type";
+    private static final String STRING_TYPE = "string";
+    private static final Map<String, String> STREAM_ATTRIBUTE_TYPES = new HashMap<>();
+    private static final String RESPONSE_STREAM = "ResponseStream";
+    private static final String CALL_STREAM = "CallStream";
+    private static final String TRIGGER_STREAM = "TimeTriggerStream";
+    private static final String AGGREGATED_STREAM = "AggregatedStream";
+    private static final String COUNT_METHOD = "count";
+    private static final String DTG_ATTRIBUTE = "dtg";
+    private static final List<String> PRE_AGGREGATION_METHODS = Arrays.asList("sum", "avg", "min", "max", COUNT_METHOD);
+    private static final List<String> NUMERIC_TYPES = Arrays.asList("Integer", "Long", "Double", "Float");
+    private static final long DEFAULT_REQUEST_FREQUENCY = 5000;
+
+    //dates, timestamps and geometries stay strings, they are parsed with the attribute formats on ingestion
+    static {
+        STREAM_ATTRIBUTE_TYPES.put("Integer", "int");
+        STREAM_ATTRIBUTE_TYPES.put("Long", "long");
+        STREAM_ATTRIBUTE_TYPES.put("Double", "double");
+        STREAM_ATTRIBUTE_TYPES.put("Float", "float");
+        STREAM_ATTRIBUTE_TYPES.put("Boolean", "bool");
+    }
 
     public static SiddhiAppRuntime generateSourceConnection(String url, long requestFrequency,
                                                             SimpleFeatureTypeSchema schema) {
+        return generateSourceConnection(
+                new SourceDefinition(schema.getSimpleFeatureTypeName(), url, requestFrequency, schema));
+    }
+
+    /**
+     * A Siddhi app polling the source, events are published to the stream named by getOutputStreamName(source).
+     */
+    public static SiddhiAppRuntime generateSourceConnection(SourceDefinition source) {
+        String siddhiApp = generateSource(source, "");
+        return siddhiManager.createSiddhiAppRuntime(siddhiApp);
+    }
+
+    /**
+     * A single Siddhi app polling all the given sources, each with its own trigger and streams.
+     * Events of the i-th source are published to the stream named by getOutputStreamName(source, i).
+     */
+    public static SiddhiAppRuntime generateSourceConnections(List<SourceDefinition> sources) {
+        StringBuilder siddhiApp = new StringBuilder();
+        for (int i = 0; i < sources.size(); i++) {
+            siddhiApp.append(generateSource(sources.get(i), String.valueOf(i)));
+        }
+        return siddhiManager.createSiddhiAppRuntime(siddhiApp.toString());
+    }
 
+    public static String getOutputStreamName(SourceDefinition source) {
+        return getOutputStreamName(source, "");
+    }
+
+    public static String getOutputStreamName(SourceDefinition source, int sourceIndex) {
+        return getOutputStreamName(source, String.valueOf(sourceIndex));
+    }
+
+    private static String getOutputStreamName(SourceDefinition source, String streamSuffix) {
+        return (source.isPreAggregated() ? AGGREGATED_STREAM : RESPONSE_STREAM) + streamSuffix;
+    }
+
+    private static String generateSource(SourceDefinition source, String streamSuffix) {
+        String url = source.getUrl();
+        long requestFrequency = source.getRequestFrequency();
+        SimpleFeatureTypeSchema schema = source.getSchema();
+        if (requestFrequency <= 0) {
+            logger.error("Invalid request frequency " + requestFrequency + " for " +
+                    schema.getSimpleFeatureTypeName() + ", polling every " + DEFAULT_REQUEST_FREQUENCY + " ms");
+            requestFrequency = DEFAULT_REQUEST_FREQUENCY;
+        }
         StringBuilder siddhiApp = new StringBuilder("");
-        siddhiApp.append(generateHttpCallResponse(url, schema));
-        siddhiApp.append("define trigger TimeTriggerStream at every " +
-                5 + " sec;");
+        siddhiApp.append(generateHttpCallResponse(url, schema, streamSuffix));
+        siddhiApp.append("define trigger " + TRIGGER_STREAM + streamSuffix + " at every " +
+                requestFrequency + " millisec;");
         siddhiApp.append(
-                "@info(name= 'pass_though') " +
-                        "from TimeTriggerStream " +
+                "@info(name= 'pass_though" + streamSuffix + "') " +
+                        "from " + TRIGGER_STREAM + streamSuffix + " " +
                         "select eventTimestamp() as timestamp " +
-                        "insert into CallStream;");
-        try {
-            SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp.toString());
-            return siddhiAppRuntime;
-        } catch (Exception e) {
-            throw e;
+                        "insert into " + CALL_STREAM + streamSuffix + ";");
+        if (source.isPreAggregated()) {
+            siddhiApp.append(generatePreAggregation(source, streamSuffix));
         }
+        return siddhiApp.toString();
+    }
+
+    /**
+     * Query aggregating the events of each spatial granule over a time batch window into a single event with the
+     * attributes of the response stream. Batches are aligned to multiples of the window since the epoch and the dtg
+     * is the start of the batch in epoch milliseconds. Other attributes that are not aggregated take the value of the
+     * last event.
+     */
+    private static String generatePreAggregation(SourceDefinition source, String streamSuffix) {
+        String method = source.getPreAggregationMethod();
+        if (!PRE_AGGREGATION_METHODS.contains(method)) {
+            throw new IllegalArgumentException("Unknown pre aggregation method " + method);
+        }
+        List<Map<String, String>> attributes = source.getSchema().getAttributes();
+        List<String> aggregatedAttributes = source.getPreAggregatedAttributes();
+        long window = source.getPreAggregationWindow();
+        boolean hasSpatialGranule = false;
+        StringBuilder selection = new StringBuilder();
+        for (int i = 0; i < attributes.size(); i++) {
+            String attributeName = attributes.get(i).get(ATTRIBUTE_NAME_KEY);
+            boolean aggregated;
+            if (AttributeUtil.SPATIAL_GRANULE_ATTRIBUTE.equals(attributeName)) {
+                hasSpatialGranule = true;
+                aggregated = false;
+            } else if (aggregatedAttributes != null && !aggregatedAttributes.isEmpty()) {
+                aggregated = aggregatedAttributes.contains(attributeName);
+            } else {
+                aggregated = NUMERIC_TYPES.contains(attributes.get(i).get(ATTRIBUTE_TYPE_KEY));
+            }
+            if (i > 0) {
+                selection.append(", ");
+            }
+            if (DTG_ATTRIBUTE.equals(attributeName) &&
+                    AttributeUtil.isTemporalType(attributes.get(i).get(ATTRIBUTE_TYPE_KEY))) {
+                //events of a batch arrived within it, so the start is the last arrival rounded down to the window
+                selection.append("(eventTimestamp() / ").append(window).append("L) * ").append(window)
+                        .append("L as ").append(attributeName);
+            } else if (!aggregated) {
+                selection.append(attributeName);
+            } else if (COUNT_METHOD.equals(method)) {
+                selection.append("count() as ").append(attributeName);
+            } else {
+                selection.append(method).append('(').append(attributeName).append(") as ").append(attributeName);
+            }
+        }
+        if (!hasSpatialGranule) {
+            throw new IllegalArgumentException(source.getFeatureName() + " has no " +
+                    AttributeUtil.SPATIAL_GRANULE_ATTRIBUTE + " attribute to pre aggregate on");
+        }
+        return "@info(name= 'pre_aggregation" + streamSuffix + "') " +
+                "from " + RESPONSE_STREAM + streamSuffix + "#window.timeBatch(" + window + " millisec, 0) " +
+                "select " + selection + " " +
+                "group by " + AttributeUtil.SPATIAL_GRANULE_ATTRIBUTE + " " +
+                "insert into " + AGGREGATED_STREAM + streamSuffix + ";";
+    }
+
+    /**
+     * Siddhi type of a stream attribute holding values of the given feature attribute type.
+     */
+    public static String getStreamAttributeType(String attributeType) {
+        return STREAM_ATTRIBUTE_TYPES.getOrDefault(attributeType, STRING_TYPE);
     }
 
     public static String generateHttpCallResponse(String url, SimpleFeatureTypeSchema schema) {
+        return generateHttpCallResponse(url, schema, "");
+    }
+
+    private static String generateHttpCallResponse(String url, SimpleFeatureTypeSchema schema, String streamSuffix) {
         StringBuilder httpCallResponse = new StringBuilder();
         httpCallResponse.append("@sink(type='http-call', sink.id='" + schema.getSimpleFeatureTypeName() + "',");
         httpCallResponse.append("publisher.url='" + url + "',");
         httpCallResponse.append("method='POST', @map(type='json'))");
-        httpCallResponse.append("define stream CallStream (timestamp long);");
+        httpCallResponse.append("define stream " + CALL_STREAM + streamSuffix + " (timestamp long);");
         httpCallResponse.append("@source(type='http-call-response' , sink.id='" +
                 schema.getSimpleFeatureTypeName() + "', " +
                 "http.status.code='200'," +
                 "@map(type='json'))");
-        httpCallResponse.append("define stream ResponseStream(");
+        httpCallResponse.append("define stream " + RESPONSE_STREAM + streamSuffix + "(");
         List<Map<String, String>> attributes = schema.getAttributes();
-        for (Map<String, String> attribute : attributes) {
-            if (attributes.indexOf(attribute) == 0) {
-                httpCallResponse.append(attribute.get(ATTRIBUTE_NAME_KEY) + " string");
-            } else {
-                httpCallResponse.append(", " + attribute.get(ATTRIBUTE_NAME_KEY) + " string");
+        for (int i = 0; i < attributes.size(); i++) {
+            if (i > 0) {
+                httpCallResponse.append(", ");
             }
+            httpCallResponse.append(attributes.get(i).get(ATTRIBUTE_NAME_KEY)).append(' ')
+                    .append(getStreamAttributeType(attributes.get(i).get(ATTRIBUTE_TYPE_KEY)));
         }
         httpCallResponse.append(");");
         return httpCallResponse.toString();
     }
 }
-
@@ -1,26 +1,24 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.stream;
 
-import io.datasearch.epidatafuse.core.fusionpipeline.FusionPipeline;
 import io.siddhi.core.event.Event;
 import io.siddhi.core.stream.output.StreamCallback;
 
 /**
  * SourceConnector class for receiving events.
+ * Events are handed to the ingestion queue of the feature type, so the Siddhi runtime does not wait for the datastore.
  */
 public class SourceConnector extends StreamCallback {
 
-    private FusionPipeline pipeline;
-    private String featureType;
+    private IngestionQueue ingestionQueue;
 
-    public SourceConnector(FusionPipeline pipeline, String featureType) {
-        this.pipeline = pipeline;
-        this.featureType = featureType;
+    public SourceConnector(IngestionQueue ingestionQueue) {
+        this.ingestionQueue = ingestionQueue;
     }
 
     @Override
     public void receive(Event[] events) {
         //To convert and print event as a map
         //EventPrinter.print(toMap(events));
-        pipeline.streamingIngest(events, this.featureType);
+        this.ingestionQueue.offer(events);
     }
 }
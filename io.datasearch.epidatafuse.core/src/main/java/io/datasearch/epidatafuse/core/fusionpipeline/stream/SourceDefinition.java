@@ -0,0 +1,69 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.stream;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.datastore.schema.SimpleFeatureTypeSchema;
+
+import java.util.List;
+
+/**
+ * An HTTP source polled for the events of a feature type.
+ */
+public class SourceDefinition {
+    private String featureName;
+    private String url;
+    //milliseconds between requests
+    private long requestFrequency;
+    private SimpleFeatureTypeSchema schema;
+    //sum, avg, min, max or count, null when events are not pre aggregated
+    private String preAggregationMethod;
+    private List<String> preAggregatedAttributes;
+    //milliseconds
+    private long preAggregationWindow;
+
+    public SourceDefinition(String featureName, String url, long requestFrequency, SimpleFeatureTypeSchema schema) {
+        this.featureName = featureName;
+        this.url = url;
+        this.requestFrequency = requestFrequency;
+        this.schema = schema;
+    }
+
+    public String getFeatureName() {
+        return featureName;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getRequestFrequency() {
+        return requestFrequency;
+    }
+
+    public SimpleFeatureTypeSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Aggregate the given attributes of the events of each spatial granule over windows of the given length.
+     */
+    public void setPreAggregation(String method, List<String> attributes, long window) {
+        this.preAggregationMethod = method;
+        this.preAggregatedAttributes = attributes;
+        this.preAggregationWindow = window;
+    }
+
+    public boolean isPreAggregated() {
+        return preAggregationMethod != null && preAggregationWindow > 0;
+    }
+
+    public String getPreAggregationMethod() {
+        return preAggregationMethod;
+    }
+
+    public List<String> getPreAggregatedAttributes() {
+        return preAggregatedAttributes;
+    }
+
+    public long getPreAggregationWindow() {
+        return preAggregationWindow;
+    }
+}
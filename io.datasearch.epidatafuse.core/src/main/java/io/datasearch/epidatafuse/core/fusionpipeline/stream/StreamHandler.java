@@ -1,57 +1,136 @@
 package io.datasearch.epidatafuse.core.fusionpipeline.stream;
 
 import io.datasearch.epidatafuse.core.fusionpipeline.FusionPipeline;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.configuration.GranularityRelationConfig;
 import io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod.TemporalRelationship;
+import io.datasearch.epidatafuse.core.util.IngestionQueueConfig;
 import io.siddhi.core.SiddhiAppRuntime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * To handle streams of data sources.
+ * Sources run in a Siddhi app each, or in one shared Siddhi app when combined source connections are enabled.
  */
 public class StreamHandler {
+    public static final String COMBINED_SOURCE_CONNECTIONS_PROPERTY = "epidatafuse.stream.combined.sources";
     private Map<String, SiddhiAppRuntime> sourceConnections;
+    private Map<String, SourceDefinition> sourceDefinitions;
+    private SiddhiAppRuntime combinedSourceConnection;
+    private boolean combinedSourceConnections;
+    private Map<String, IngestionQueue> ingestionQueues;
     private FusionPipeline pipeline;
     private static final Logger logger = LoggerFactory.getLogger(StreamHandler.class);
     private static final String REQUEST_FREQUENCY_KEY = "request_frequency";
     private static final String GRANULARITY_KEY = "granularity";
     private static final String MULTIPLIER_KEY = "multiplier";
     private static final String URL_KEY = "url";
+    private static final String PRE_AGGREGATION_KEY = "pre_aggregation";
+    private static final String PRE_AGGREGATION_METHOD_KEY = "method";
+    private static final String PRE_AGGREGATION_ATTRIBUTES_KEY = "attributes";
+    private static final String PRE_AGGREGATION_WINDOW_KEY = "window";
 
     //modify to get the source config
     public StreamHandler(FusionPipeline pipeline) {
         try {
             this.pipeline = pipeline;
             this.sourceConnections = new HashMap<>();
+            this.sourceDefinitions = new LinkedHashMap<>();
+            this.combinedSourceConnections = Boolean.getBoolean(COMBINED_SOURCE_CONNECTIONS_PROPERTY);
+            this.ingestionQueues = new HashMap<>();
         } catch (Exception e) {
             logger.error(e.getMessage());
         }
     }
 
+    /**
+     * Run all sources of the pipeline in one Siddhi app, must be set before the pipeline is initialized.
+     */
+    public void setCombinedSourceConnections(boolean combinedSourceConnections) {
+        this.combinedSourceConnections = combinedSourceConnections;
+    }
+
     public void init() {
         startSourceConnections();
     }
 
     public void addStreamingConfiguration(String featureName, Map<String, Object> parameters) {
-        Map<String, Object> requestFQ = (HashMap<String, Object>) parameters.get(REQUEST_FREQUENCY_KEY);
-        String granularity = (String) requestFQ.get(GRANULARITY_KEY);
         String url = (String) parameters.get(URL_KEY);
-        int multiplier = (int) requestFQ.get(MULTIPLIER_KEY);
-        long requestFrequency =
-                TemporalRelationship.getGranularityToSeconds(granularity) * multiplier;
-        sourceConnections.put(featureName, SiddhiAppFactory.
-                generateSourceConnection(url, requestFrequency, pipeline.getSchema(featureName)));
+        //milliseconds
+        long requestFrequency = getDuration((Map<String, Object>) parameters.get(REQUEST_FREQUENCY_KEY));
+        logger.info("Polling " + featureName + " every " + requestFrequency + " ms");
+        SourceDefinition source = new SourceDefinition(featureName, url, requestFrequency,
+                pipeline.getSchema(featureName));
+        Map<String, Object> preAggregation = (Map<String, Object>) parameters.get(PRE_AGGREGATION_KEY);
+        if (preAggregation != null) {
+            source.setPreAggregation((String) preAggregation.get(PRE_AGGREGATION_METHOD_KEY),
+                    (List<String>) preAggregation.get(PRE_AGGREGATION_ATTRIBUTES_KEY),
+                    getPreAggregationWindow(featureName, (Map<String, Object>) preAggregation.get(
+                            PRE_AGGREGATION_WINDOW_KEY)));
+        }
+        if (!combinedSourceConnections) {
+            sourceConnections.put(featureName, SiddhiAppFactory.generateSourceConnection(source));
+        }
+        sourceDefinitions.put(featureName, source);
+        IngestionQueueConfig queueConfig = new IngestionQueueConfig(parameters);
+        IngestionQueue ingestionQueue = new IngestionQueue(featureName,
+                queueConfig.getQueueCapacity(), queueConfig.getWriterThreads(),
+                IngestionQueue.OverflowPolicy.fromString(queueConfig.getOverflowPolicy()),
+                Paths.get(queueConfig.getSpillDirectory(), pipeline.getPipelineName(), featureName + ".spill"),
+                events -> pipeline.streamingIngest(events, featureName));
+        //events are written in micro batches after the queue handed them over, failed batches come back to it
+        pipeline.setStreamingWriteFailureHandler(featureName, ingestionQueue::takeFailedWrite);
+        IngestionQueue previousQueue = ingestionQueues.put(featureName, ingestionQueue);
+        if (previousQueue != null) {
+            previousQueue.shutdown();
+        }
+    }
+
+    /**
+     * Length of the pre aggregation window in milliseconds, the base temporal granularity of the feature unless a
+     * window is given.
+     */
+    private long getPreAggregationWindow(String featureName, Map<String, Object> window) {
+        if (window != null) {
+            return getDuration(window);
+        }
+        GranularityRelationConfig relationConfig = pipeline.getGranularityRelationConfig(featureName);
+        if (relationConfig == null || relationConfig.getTemporalGranularity() == null) {
+            throw new IllegalArgumentException("No temporal granularity to pre aggregate " + featureName + " on");
+        }
+        return TemporalRelationship.getGranularityDuration(relationConfig.getTemporalGranularity()) *
+                Math.max(relationConfig.getTemporalMultiplier(), 1);
+    }
+
+    /**
+     * Milliseconds of a granularity and multiplier, such as a request frequency.
+     */
+    private static long getDuration(Map<String, Object> frequency) {
+        if (frequency == null) {
+            throw new IllegalArgumentException("No " + GRANULARITY_KEY + " and " + MULTIPLIER_KEY + " given");
+        }
+        Object multiplier = frequency.get(MULTIPLIER_KEY);
+        return TemporalRelationship.getGranularityDuration((String) frequency.get(GRANULARITY_KEY)) *
+                (multiplier != null ? Integer.parseInt(multiplier.toString()) : 1);
     }
 
     public void startSourceConnections() {
-        if (sourceConnections != null) {
+        if (combinedSourceConnections) {
+            startCombinedSourceConnection();
+        } else if (sourceConnections != null) {
             try {
                 for (Map.Entry<String, SiddhiAppRuntime> sourceConnection : sourceConnections.entrySet()) {
-                    sourceConnection.getValue().addCallback("ResponseStream",
-                            new SourceConnector(this.pipeline, sourceConnection.getKey()));
+                    IngestionQueue ingestionQueue = ingestionQueues.get(sourceConnection.getKey());
+                    ingestionQueue.start();
+                    sourceConnection.getValue().addCallback(SiddhiAppFactory.getOutputStreamName(
+                            sourceDefinitions.get(sourceConnection.getKey())), new SourceConnector(ingestionQueue));
                     sourceConnection.getValue().start();
                 }
             } catch (Exception e) {
@@ -60,12 +139,46 @@ public class StreamHandler {
         }
     }
 
+    private void startCombinedSourceConnection() {
+        if (sourceDefinitions.isEmpty()) {
+            return;
+        }
+        try {
+            List<SourceDefinition> sources = new ArrayList<>(sourceDefinitions.values());
+            combinedSourceConnection = SiddhiAppFactory.generateSourceConnections(sources);
+            for (int i = 0; i < sources.size(); i++) {
+                IngestionQueue ingestionQueue = ingestionQueues.get(sources.get(i).getFeatureName());
+                ingestionQueue.start();
+                combinedSourceConnection.addCallback(SiddhiAppFactory.getOutputStreamName(sources.get(i), i),
+                        new SourceConnector(ingestionQueue));
+            }
+            combinedSourceConnection.start();
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+        }
+    }
+
     public void terminateSourceConnections() {
+        if (combinedSourceConnection != null) {
+            combinedSourceConnection.shutdown();
+            combinedSourceConnection = null;
+        }
         if (sourceConnections != null) {
             sourceConnections.values().forEach(sourceConnection -> {
                 sourceConnection.shutdown();
             });
         }
+        if (ingestionQueues != null) {
+            ingestionQueues.values().forEach(IngestionQueue::shutdown);
+        }
+    }
+
+    public Map<String, Map<String, Object>> getIngestionQueueStatistics() {
+        Map<String, Map<String, Object>> statistics = new HashMap<>();
+        if (ingestionQueues != null) {
+            ingestionQueues.forEach((featureName, queue) -> statistics.put(featureName, queue.getStatistics()));
+        }
+        return statistics;
     }
 
 }
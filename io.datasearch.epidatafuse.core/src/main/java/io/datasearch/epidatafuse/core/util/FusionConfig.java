@@ -0,0 +1,174 @@
+package io.datasearch.epidatafuse.core.util;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runtime configuration of the fuse engine of a pipeline.
+ */
+public class FusionConfig {
+    public static final String PARALLEL_AGGREGATION_KEY = "parallel_aggregation";
+    public static final String AGGREGATION_PARALLELISM_KEY = "aggregation_parallelism";
+    public static final String FEATURE_AGGREGATION_THREADS_KEY = "feature_aggregation_threads";
+    public static final String FEATURE_AGGREGATION_TIMEOUT_KEY = "feature_aggregation_timeout";
+    public static final String SCHEDULE_MODE_KEY = "schedule_mode";
+    public static final String INCREMENTAL_TEMPORAL_AGGREGATION_KEY = "incremental_temporal_aggregation";
+    public static final String OUTPUT_FORMAT_KEY = "output_format";
+    public static final String BINARY_OUTPUT_FORMAT = "binary";
+    public static final String CSV_OUTPUT_FORMAT = "csv";
+    public static final String BINARY_AND_CSV_OUTPUT_FORMAT = "both";
+    public static final String RECENT_FRAMES_KEY = "recent_frames";
+    public static final String RECENT_FRAMES_MEMORY_KEY = "recent_frames_memory";
+    public static final String PERSISTENCE_QUEUE_CAPACITY_KEY = "persistence_queue_capacity";
+    private static final int DEFAULT_AGGREGATION_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_FEATURE_AGGREGATION_THREADS = Math.min(4, DEFAULT_AGGREGATION_PARALLELISM);
+    private static final long DEFAULT_FEATURE_AGGREGATION_TIMEOUT = 600;
+    private static final String DEFAULT_SCHEDULE_MODE = "fixed_delay";
+    private static final int DEFAULT_RECENT_FRAMES = 24;
+    private static final long DEFAULT_RECENT_FRAMES_MEMORY = 64;
+    private static final int DEFAULT_PERSISTENCE_QUEUE_CAPACITY = 16;
+    private boolean parallelAggregation;
+    private int aggregationParallelism;
+    private int featureAggregationThreads;
+    //seconds, 0 waits until the aggregation completes
+    private long featureAggregationTimeout;
+    //fixed_delay or fixed_rate
+    private String scheduleMode;
+    private boolean incrementalTemporalAggregation;
+    //binary, csv or both
+    private String outputFormat;
+    //number of recent data frames kept in memory, 0 disables the buffer
+    private int recentFrames;
+    //megabytes
+    private long recentFramesMemory;
+    //data frames waiting to be written before fusion runs write them themselves
+    private int persistenceQueueCapacity;
+
+    public FusionConfig() {
+        this(new HashMap<>());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the output format is not binary, csv or both
+     */
+    public FusionConfig(Map<String, Object> configurations) {
+        this.parallelAggregation = getBoolean(configurations, PARALLEL_AGGREGATION_KEY, false);
+        this.aggregationParallelism =
+                getInteger(configurations, AGGREGATION_PARALLELISM_KEY, DEFAULT_AGGREGATION_PARALLELISM);
+        if (this.aggregationParallelism < 1) {
+            this.aggregationParallelism = 1;
+        }
+        this.featureAggregationThreads =
+                getInteger(configurations, FEATURE_AGGREGATION_THREADS_KEY, DEFAULT_FEATURE_AGGREGATION_THREADS);
+        if (this.featureAggregationThreads < 1) {
+            this.featureAggregationThreads = 1;
+        }
+        this.featureAggregationTimeout =
+                getLong(configurations, FEATURE_AGGREGATION_TIMEOUT_KEY, DEFAULT_FEATURE_AGGREGATION_TIMEOUT);
+        if (this.featureAggregationTimeout < 0) {
+            this.featureAggregationTimeout = 0;
+        }
+        Object scheduleModeValue = configurations.get(SCHEDULE_MODE_KEY);
+        this.scheduleMode = scheduleModeValue != null ? scheduleModeValue.toString() : DEFAULT_SCHEDULE_MODE;
+        this.incrementalTemporalAggregation = getBoolean(configurations, INCREMENTAL_TEMPORAL_AGGREGATION_KEY, false);
+        Object outputFormatValue = configurations.get(OUTPUT_FORMAT_KEY);
+        this.outputFormat = outputFormatValue != null ?
+                outputFormatValue.toString().trim().toLowerCase(Locale.ROOT) : BINARY_OUTPUT_FORMAT;
+        if (!BINARY_OUTPUT_FORMAT.equals(this.outputFormat) && !CSV_OUTPUT_FORMAT.equals(this.outputFormat) &&
+                !BINARY_AND_CSV_OUTPUT_FORMAT.equals(this.outputFormat)) {
+            throw new IllegalArgumentException("Unknown output format " + outputFormatValue +
+                    ", expected binary, csv or both");
+        }
+        this.recentFrames = getInteger(configurations, RECENT_FRAMES_KEY, DEFAULT_RECENT_FRAMES);
+        this.recentFramesMemory = getLong(configurations, RECENT_FRAMES_MEMORY_KEY, DEFAULT_RECENT_FRAMES_MEMORY);
+        this.persistenceQueueCapacity =
+                getInteger(configurations, PERSISTENCE_QUEUE_CAPACITY_KEY, DEFAULT_PERSISTENCE_QUEUE_CAPACITY);
+        if (this.persistenceQueueCapacity < 1) {
+            this.persistenceQueueCapacity = 1;
+        }
+    }
+
+    /**
+     * Configuration with the given values replacing the values of this configuration, other values are kept.
+     */
+    public FusionConfig merge(Map<String, Object> configurations) {
+        Map<String, Object> merged = this.toMap();
+        merged.putAll(configurations);
+        return new FusionConfig(merged);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> configurations = new HashMap<>();
+        configurations.put(PARALLEL_AGGREGATION_KEY, this.parallelAggregation);
+        configurations.put(AGGREGATION_PARALLELISM_KEY, this.aggregationParallelism);
+        configurations.put(FEATURE_AGGREGATION_THREADS_KEY, this.featureAggregationThreads);
+        configurations.put(FEATURE_AGGREGATION_TIMEOUT_KEY, this.featureAggregationTimeout);
+        configurations.put(SCHEDULE_MODE_KEY, this.scheduleMode);
+        configurations.put(INCREMENTAL_TEMPORAL_AGGREGATION_KEY, this.incrementalTemporalAggregation);
+        configurations.put(OUTPUT_FORMAT_KEY, this.outputFormat);
+        configurations.put(RECENT_FRAMES_KEY, this.recentFrames);
+        configurations.put(RECENT_FRAMES_MEMORY_KEY, this.recentFramesMemory);
+        configurations.put(PERSISTENCE_QUEUE_CAPACITY_KEY, this.persistenceQueueCapacity);
+        return configurations;
+    }
+
+    private static Boolean getBoolean(Map<String, Object> configurations, String key, Boolean defaultValue) {
+        Object value = configurations.get(key);
+        return value != null ? Boolean.valueOf(value.toString()) : defaultValue;
+    }
+
+    private static Integer getInteger(Map<String, Object> configurations, String key, Integer defaultValue) {
+        Object value = configurations.get(key);
+        return value != null ? Integer.valueOf(value.toString()) : defaultValue;
+    }
+
+    private static Long getLong(Map<String, Object> configurations, String key, Long defaultValue) {
+        Object value = configurations.get(key);
+        return value != null ? Long.valueOf(value.toString()) : defaultValue;
+    }
+
+    public boolean isParallelAggregation() {
+        return parallelAggregation;
+    }
+
+    public int getAggregationParallelism() {
+        return aggregationParallelism;
+    }
+
+    public int getFeatureAggregationThreads() {
+        return featureAggregationThreads;
+    }
+
+    public long getFeatureAggregationTimeout() {
+        return featureAggregationTimeout;
+    }
+
+    public String getScheduleMode() {
+        return scheduleMode;
+    }
+
+    public boolean isIncrementalTemporalAggregation() {
+        return incrementalTemporalAggregation;
+    }
+
+    public boolean isBinaryOutput() {
+        return BINARY_OUTPUT_FORMAT.equals(outputFormat) || BINARY_AND_CSV_OUTPUT_FORMAT.equals(outputFormat);
+    }
+
+    public int getRecentFrames() {
+        return recentFrames;
+    }
+
+    public long getRecentFramesMemory() {
+        return recentFramesMemory;
+    }
+
+    public int getPersistenceQueueCapacity() {
+        return persistenceQueueCapacity;
+    }
+
+    public boolean isCSVOutput() {
+        return CSV_OUTPUT_FORMAT.equals(outputFormat) || BINARY_AND_CSV_OUTPUT_FORMAT.equals(outputFormat);
+    }
+}
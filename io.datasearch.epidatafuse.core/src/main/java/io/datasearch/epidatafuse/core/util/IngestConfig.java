@@ -16,12 +16,19 @@ public class IngestConfig {
     private static final String ATTRIBUTE_NAME_KEY = "attribute_name";
     private static final String TRANSFORMATION_KEY = "transformation";
     private static final String PIPELINE_NAME_KEY = "pipeline_name";
+    private static final String BATCH_SIZE_KEY = "batch_size";
+    private static final int DEFAULT_BATCH_SIZE = 10000;
+    private static final String INGESTION_THREADS_KEY = "ingestion_threads";
+    private static final String FEATURE_ID_STRATEGY_KEY = "feature_id_strategy";
     private String pipelineName;
     private String featureName;
     private String sourceType;
     private String sourceFormat;
     private Map<String, Integer> transformations;
     private List<String> dataSources;
+    private int batchSize;
+    private int ingestionThreads;
+    private String featureIdStrategy;
 
     public IngestConfig(Map<String, Object> configurations) {
         this.pipelineName = (String) configurations.get(PIPELINE_NAME_KEY);
@@ -34,6 +41,14 @@ public class IngestConfig {
                     (Integer) transformation.get(TRANSFORMATION_KEY));
         }
         this.dataSources = (List<String>) configurations.get(DATA_SOURCES_KEY);
+        Object batchSizeValue = configurations.get(BATCH_SIZE_KEY);
+        this.batchSize = batchSizeValue != null ? Integer.parseInt(batchSizeValue.toString()) : DEFAULT_BATCH_SIZE;
+        if (this.batchSize < 1) {
+            this.batchSize = DEFAULT_BATCH_SIZE;
+        }
+        Object ingestionThreadsValue = configurations.get(INGESTION_THREADS_KEY);
+        this.ingestionThreads = ingestionThreadsValue != null ? Integer.parseInt(ingestionThreadsValue.toString()) : 1;
+        this.featureIdStrategy = (String) configurations.get(FEATURE_ID_STRATEGY_KEY);
     }
 
     public String getFeatureName() {
@@ -59,4 +74,16 @@ public class IngestConfig {
     public String getPipelineName() {
         return pipelineName;
     }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getIngestionThreads() {
+        return ingestionThreads;
+    }
+
+    public String getFeatureIdStrategy() {
+        return featureIdStrategy;
+    }
 }
@@ -0,0 +1,63 @@
+package io.datasearch.epidatafuse.core.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the ingestion queue between a streaming source and the datastore.
+ */
+public class IngestionQueueConfig {
+    public static final String QUEUE_CAPACITY_KEY = "queue_capacity";
+    public static final String WRITER_THREADS_KEY = "writer_threads";
+    public static final String OVERFLOW_POLICY_KEY = "overflow_policy";
+    public static final String SPILL_DIRECTORY_KEY = "spill_directory";
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final int DEFAULT_WRITER_THREADS = 1;
+    private static final String DEFAULT_OVERFLOW_POLICY = "block";
+    private static final String DEFAULT_SPILL_DIRECTORY = "spill";
+    //number of events
+    private int queueCapacity;
+    private int writerThreads;
+    //block, drop_oldest or spill
+    private String overflowPolicy;
+    private String spillDirectory;
+
+    public IngestionQueueConfig() {
+        this(new HashMap<>());
+    }
+
+    public IngestionQueueConfig(Map<String, Object> configurations) {
+        Object queueCapacityValue = configurations.get(QUEUE_CAPACITY_KEY);
+        this.queueCapacity = queueCapacityValue != null ?
+                Integer.parseInt(queueCapacityValue.toString()) : DEFAULT_QUEUE_CAPACITY;
+        if (this.queueCapacity < 1) {
+            this.queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        }
+        Object writerThreadsValue = configurations.get(WRITER_THREADS_KEY);
+        this.writerThreads = writerThreadsValue != null ?
+                Integer.parseInt(writerThreadsValue.toString()) : DEFAULT_WRITER_THREADS;
+        if (this.writerThreads < 1) {
+            this.writerThreads = DEFAULT_WRITER_THREADS;
+        }
+        Object overflowPolicyValue = configurations.get(OVERFLOW_POLICY_KEY);
+        this.overflowPolicy = overflowPolicyValue != null ? overflowPolicyValue.toString() : DEFAULT_OVERFLOW_POLICY;
+        Object spillDirectoryValue = configurations.get(SPILL_DIRECTORY_KEY);
+        this.spillDirectory = spillDirectoryValue != null ? spillDirectoryValue.toString() : DEFAULT_SPILL_DIRECTORY;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+}
@@ -28,6 +28,10 @@ public class PipelineInfo {
     private String initialTimestamp;
     private String initTimestamp;
     private Map<String, String> streamingConfig;
+    private Map<String, Object> schedulerStatistics = new HashMap<>();
+    private Map<String, Map<String, Object>> ingestionQueueStatistics = new HashMap<>();
+    private Map<String, Object> recentFrameStatistics = new HashMap<>();
+    private Map<String, Object> persistenceStatistics = new HashMap<>();
 
     public PipelineInfo(String pipelineName, Map<String, SimpleFeatureTypeSchema> features,
                         Map<String, SimpleFeatureTypeSchema> granularities,
@@ -106,4 +110,36 @@ public class PipelineInfo {
     public Map<String, String> getStreamingConfig() {
         return streamingConfig;
     }
+
+    public Map<String, Object> getSchedulerStatistics() {
+        return schedulerStatistics;
+    }
+
+    public void setSchedulerStatistics(Map<String, Object> schedulerStatistics) {
+        this.schedulerStatistics = schedulerStatistics;
+    }
+
+    public Map<String, Map<String, Object>> getIngestionQueueStatistics() {
+        return ingestionQueueStatistics;
+    }
+
+    public void setIngestionQueueStatistics(Map<String, Map<String, Object>> ingestionQueueStatistics) {
+        this.ingestionQueueStatistics = ingestionQueueStatistics;
+    }
+
+    public Map<String, Object> getRecentFrameStatistics() {
+        return recentFrameStatistics;
+    }
+
+    public void setRecentFrameStatistics(Map<String, Object> recentFrameStatistics) {
+        this.recentFrameStatistics = recentFrameStatistics;
+    }
+
+    public Map<String, Object> getPersistenceStatistics() {
+        return persistenceStatistics;
+    }
+
+    public void setPersistenceStatistics(Map<String, Object> persistenceStatistics) {
+        this.persistenceStatistics = persistenceStatistics;
+    }
 }
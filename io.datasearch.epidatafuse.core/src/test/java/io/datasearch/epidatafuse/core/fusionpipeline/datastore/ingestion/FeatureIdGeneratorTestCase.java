@@ -0,0 +1,82 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.datastore.ingestion;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FeatureIdGeneratorTestCase {
+
+    @Test
+    public void testMurmur3ReferenceVectors() {
+        //MurmurHash3_x64_128 with seed 0, h1 followed by h2
+        Assert.assertEquals(murmur3(""), "00000000000000000000000000000000");
+        Assert.assertEquals(murmur3("a"), "85555565F6597889E6B53A48510E895A");
+        Assert.assertEquals(murmur3("hello"), "CBD8A7B341BD9B025B1E906A48AE1D19");
+        Assert.assertEquals(murmur3("The quick brown fox jumps over the lazy dog"),
+                "E34BBC7BBC071B6C7A433CA9C49A9347");
+    }
+
+    @Test
+    public void testHashGeneratorJoinsValues() {
+        HashFeatureIdGenerator generator = new HashFeatureIdGenerator();
+        Assert.assertEquals(generator.generateFeatureID(Arrays.asList("colombo", "2020-01-01", "12.5"), null),
+                "7DBAF75362E9EE8FBA3665F333E27897");
+        //multi byte characters and surrogate pairs are encoded as UTF-8
+        Assert.assertEquals(generator.generateFeatureID(Arrays.asList("d\u00e9ngue", "\u6771\u4eac",
+                "\uD83D\uDE00"), null), "C695BF0D4F119C2D33F3766949D9AFD4");
+    }
+
+    @Test
+    public void testMD5GeneratorReproducesCSVIds() throws Exception {
+        CSVRecord record = CSVParser.parse("spatialId,dtg,value\ncolombo,2020-01-01,12.5",
+                CSVFormat.DEFAULT.withHeader().withSkipHeaderRecord()).getRecords().get(0);
+        Assert.assertEquals(new MD5FeatureIdGenerator().generateFeatureID(record, null),
+                legacyFeatureID(record.toString()));
+    }
+
+    @Test
+    public void testMD5GeneratorReproducesShapefileAndStreamIds() throws Exception {
+        MD5FeatureIdGenerator generator = new MD5FeatureIdGenerator();
+        Assert.assertEquals(generator.generateFeatureID(SourceRecord.ofFeatureId("moh_areas.12"), null),
+                legacyFeatureID("moh_areas.12"));
+
+        Map<String, String> event = new HashMap<>();
+        event.put("spatialId", "colombo");
+        event.put("dtg", "2020-01-01");
+        event.put("value", "12.5");
+        Assert.assertEquals(generator.generateFeatureID(SourceRecord.ofEvent(
+                Arrays.asList("spatialId", "dtg", "value"), new String[]{"colombo", "2020-01-01", "12.5"}), null),
+                legacyFeatureID(event.toString()));
+    }
+
+    @Test
+    public void testDefaultStrategy() {
+        Assert.assertTrue(FeatureIdGenerator.getGenerator(null) instanceof MD5FeatureIdGenerator);
+        Assert.assertTrue(FeatureIdGenerator.getGenerator("hash") instanceof HashFeatureIdGenerator);
+    }
+
+    private static String murmur3(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long[] hash = new long[2];
+        HashFeatureIdGenerator.murmur3(bytes, bytes.length, hash);
+        char[] hex = new char[32];
+        HashFeatureIdGenerator.toHex(hash[0], hex, 0);
+        HashFeatureIdGenerator.toHex(hash[1], hex, 16);
+        return new String(hex);
+    }
+
+    //ids of stores populated before the id strategies were pluggable
+    private static String legacyFeatureID(String record) throws Exception {
+        byte[] md5sum = MessageDigest.getInstance("MD5").digest(record.getBytes(StandardCharsets.UTF_8));
+        return String.format("%032X", new BigInteger(1, md5sum));
+    }
+}
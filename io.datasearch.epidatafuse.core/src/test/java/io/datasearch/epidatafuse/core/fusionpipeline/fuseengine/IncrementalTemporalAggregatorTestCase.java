@@ -0,0 +1,220 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.fuseengine;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregateInvoker;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.aggregationmethod.AggregationUtil;
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.GranuleWindowState;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class IncrementalTemporalAggregatorTestCase {
+    private static final double DELTA = 1e-9;
+    private static final String[] METHODS =
+            {AggregationUtil.MEAN, AggregationUtil.SUM, AggregationUtil.MAX, AggregationUtil.MIN};
+    //timestamp and value pairs, the second observation at 40 replaces the first one
+    private static final long[][] FIXTURE = {
+            {10, 4}, {20, 7}, {30, 1}, {40, 9}, {40, 3}, {50, 6}, {60, 12}, {70, 2}, {80, 5}, {90, 8}
+    };
+
+    @Test
+    public void testExclusiveWindowBounds() {
+        GranuleWindowState state = new GranuleWindowState();
+        state.advance(100, 200);
+        state.put(100, 1);
+        state.put(101, 2);
+        state.put(199, 3);
+        state.put(200, 4);
+        Assert.assertEquals(state.getCount(), 2);
+        Assert.assertEquals(state.getSum(), 5.0, DELTA);
+        Assert.assertEquals(state.getLastTimestamp(), 199);
+        Assert.assertEquals(state.getLastValue(), 3.0, DELTA);
+    }
+
+    @Test
+    public void testAdvanceEvictsAndAdmits() {
+        GranuleWindowState state = new GranuleWindowState();
+        state.advance(0, 50);
+        this.putFixture(state);
+        Assert.assertEquals(state.getCount(), 4);
+        Assert.assertEquals(state.getSum(), 15.0, DELTA);
+
+        //observations up to the new start leave, the ones before the new end enter
+        state.advance(30, 80);
+        Assert.assertEquals(state.getCount(), 4);
+        Assert.assertEquals(state.getSum(), 23.0, DELTA);
+
+        state.advance(200, 300);
+        Assert.assertEquals(state.getCount(), 0);
+        Assert.assertEquals(state.getSum(), 0.0, DELTA);
+        Assert.assertTrue(Double.isNaN(state.getLastValue()));
+        Assert.assertTrue(state.isEmpty());
+
+        //observations at or before the window start are ignored
+        state.put(150, 1);
+        state.put(200, 1);
+        Assert.assertTrue(state.isEmpty());
+    }
+
+    @Test
+    public void testBackwardsReset() {
+        GranuleWindowState state = new GranuleWindowState();
+        state.advance(0, 50);
+        this.putFixture(state);
+        state.advance(40, 100);
+        Assert.assertEquals(state.getCount(), 5);
+
+        //a window moving backwards is recomputed from the observations still kept
+        state.advance(45, 75);
+        Assert.assertEquals(state.getCount(), 3);
+        Assert.assertEquals(state.getSum(), 20.0, DELTA);
+        Assert.assertEquals(state.getMin(), 2.0, DELTA);
+        Assert.assertEquals(state.getMax(), 12.0, DELTA);
+
+        //evicted observations do not come back
+        state.advance(0, 75);
+        Assert.assertEquals(state.getCount(), 3);
+        Assert.assertEquals(state.getSum(), 20.0, DELTA);
+    }
+
+    @Test
+    public void testLazyExtremesRefresh() {
+        GranuleWindowState state = new GranuleWindowState();
+        state.advance(0, 100);
+        this.putFixture(state);
+        Assert.assertEquals(state.getMax(), 12.0, DELTA);
+        Assert.assertEquals(state.getMin(), 1.0, DELTA);
+
+        //evicting the extremes refreshes them on the next read
+        state.advance(30, 100);
+        Assert.assertEquals(state.getMin(), 2.0, DELTA);
+        state.advance(60, 100);
+        Assert.assertEquals(state.getMax(), 8.0, DELTA);
+
+        //replacing the minimum with a larger value at the same timestamp
+        state.put(70, 10);
+        Assert.assertEquals(state.getMin(), 5.0, DELTA);
+        Assert.assertEquals(state.getMax(), 10.0, DELTA);
+        Assert.assertEquals(state.getSum(), 23.0, DELTA);
+    }
+
+    @Test
+    public void testEquivalenceWithScan() {
+        //seeded before the first window like a newly created state
+        GranuleWindowState state = new GranuleWindowState();
+        this.putFixture(state);
+        long[][] windows = {{0, 25}, {5, 45}, {20, 60}, {40, 40}, {40, 85}, {45, 75}, {50, 100}, {90, 120}};
+        for (long[] window : windows) {
+            state.advance(window[0], window[1]);
+            double[] values = this.scan(window[0], window[1]);
+            Assert.assertEquals(state.getCount(), values.length, window[0] + "/" + window[1]);
+            if (values.length == 0) {
+                continue;
+            }
+            for (String method : METHODS) {
+                Assert.assertEquals(IncrementalTemporalAggregator.aggregate(state, method, 1),
+                        this.scanAggregate(values, method), DELTA, method + " " + window[0] + "/" + window[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testObservationsAheadOfWindow() {
+        GranuleWindowState state = new GranuleWindowState();
+        state.advance(0, 30);
+        //observations up to one window length after the end are kept
+        this.putFixture(state);
+        Assert.assertEquals(state.getCount(), 2);
+        state.advance(30, 60);
+        Assert.assertEquals(state.getCount(), 2);
+        Assert.assertEquals(state.getSum(), 9.0, DELTA);
+        Assert.assertTrue(state.isComplete());
+
+        //the observations at 60 and later were dropped, the window is incomplete once it reaches them
+        state.advance(50, 70);
+        Assert.assertFalse(state.isComplete());
+    }
+
+    @Test
+    public void testFeatureWindowState() throws SchemaException {
+        SimpleFeatureType featureType =
+                DataUtilities.createType("observation", "granule:String,dtg:Date,value:Double");
+        IncrementalTemporalAggregator aggregator = new IncrementalTemporalAggregator();
+        aggregator.onFeatureIngested("observation", this.feature(featureType, "G1", 10, 1.0));
+        Assert.assertNull(aggregator.getState("observation", "granule", "value"));
+
+        IncrementalTemporalAggregator.FeatureWindowState featureState =
+                aggregator.createState("observation", "granule", "value");
+        Assert.assertNull(aggregator.getState("observation", "granule", "other"));
+        Assert.assertSame(aggregator.getState("observation", "granule", "value"), featureState);
+
+        aggregator.onFeatureIngested("observation", this.feature(featureType, "G1", 20, 2.0));
+        aggregator.onFeatureIngested("observation", this.feature(featureType, "g1", 30, 4.0));
+        aggregator.onFeatureIngested("observation", this.feature(featureType, "G2", 30, 5.0));
+        aggregator.onFeatureIngested("observation", this.feature(featureType, "G2", 40, null));
+        aggregator.onFeatureIngested("other", this.feature(featureType, "G2", 50, 6.0));
+        //granule states take part in the window once it is advanced
+        featureState.advance(0, 100);
+
+        GranuleWindowState granuleState = featureState.getGranuleState("g1");
+        Assert.assertEquals(granuleState.getCount(), 2);
+        Assert.assertEquals(IncrementalTemporalAggregator.aggregate(granuleState, AggregationUtil.MEAN, 1), 3.0, DELTA);
+        Assert.assertEquals(featureState.getGranuleState("G2").getCount(), 1);
+        Assert.assertNull(featureState.getGranuleState("G3"));
+
+        aggregator.removeState("observation");
+        Assert.assertNull(aggregator.getState("observation", "granule", "value"));
+    }
+
+    @Test
+    public void testSupportedMethods() {
+        Assert.assertTrue(IncrementalTemporalAggregator.isSupportedMethod(AggregationUtil.MEAN));
+        Assert.assertTrue(IncrementalTemporalAggregator.isSupportedMethod(AggregationUtil.BRING_FORWARD));
+        Assert.assertFalse(IncrementalTemporalAggregator.isSupportedMethod(AggregationUtil.INVERSE_DISTANCE));
+        Assert.assertFalse(IncrementalTemporalAggregator.isSupportedMethod(null));
+    }
+
+    private void putFixture(GranuleWindowState state) {
+        for (long[] observation : FIXTURE) {
+            state.put(observation[0], observation[1]);
+        }
+    }
+
+    /**
+     * Values the datastore scan aggregates, observations in (start, end) with a later value of a timestamp
+     * replacing the earlier one.
+     */
+    private double[] scan(long start, long end) {
+        Map<Long, Double> observations = new LinkedHashMap<>();
+        for (long[] observation : FIXTURE) {
+            if (observation[0] > start && observation[0] < end) {
+                observations.put(observation[0], (double) observation[1]);
+            }
+        }
+        return observations.values().stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private double scanAggregate(double[] values, String method) {
+        switch (method) {
+            case AggregationUtil.MEAN:
+                return AggregateInvoker.mean(values, values.length);
+            case AggregationUtil.SUM:
+                return AggregateInvoker.sum(values, values.length);
+            case AggregationUtil.MAX:
+                return AggregateInvoker.max(values, values.length);
+            default:
+                return AggregateInvoker.min(values, values.length);
+        }
+    }
+
+    private SimpleFeature feature(SimpleFeatureType featureType, String granule, long dtg, Double value) {
+        return SimpleFeatureBuilder.build(featureType, new Object[]{granule, new Date(dtg), value}, null);
+    }
+}
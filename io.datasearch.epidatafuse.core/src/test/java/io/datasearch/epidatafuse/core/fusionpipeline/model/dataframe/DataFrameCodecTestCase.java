@@ -0,0 +1,126 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.dataframe;
+
+import io.datasearch.epidatafuse.core.fusionpipeline.model.datamodel.SpatioTemporallyAggregatedCollection;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DataFrameCodecTestCase {
+    private static final String DTG = "2020-06-01T10:00";
+    private static final String RECORD_DTG = "2020-06-01T09:00";
+    private static final int ROWS = 130;
+
+    @Test
+    public void testEmptyFrame() throws IOException {
+        //a frame without feature types has no record timestamp or granularities
+        MappedDataFrame frame = DataFrameCodec.decode(DataFrameCodec.encode(new DataFrame(null)));
+        Assert.assertNull(frame.getDtg());
+        Assert.assertNull(frame.getRecordDtg());
+        Assert.assertNull(frame.getSpatialGranularity());
+        Assert.assertNull(frame.getTemporalGranularity());
+        Assert.assertEquals(frame.getRowCount(), 0);
+        Assert.assertEquals(frame.getColumnCount(), 0);
+        Assert.assertEquals(frame.getRow("G0"), -1);
+    }
+
+    @Test
+    public void testFrameWithoutRows() throws IOException, SchemaException {
+        DataFrame dataFrame = new DataFrame(DTG);
+        dataFrame.addAggregatedFeatureType(this.collection("dengue", new ArrayList<>()));
+        MappedDataFrame frame = DataFrameCodec.decode(DataFrameCodec.encode(dataFrame));
+        Assert.assertEquals(frame.getDtg(), DTG);
+        Assert.assertEquals(frame.getRowCount(), 0);
+        Assert.assertEquals(frame.getColumnNames(), new String[]{"dengue_value"});
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException, SchemaException {
+        DataFrame dataFrame = this.createFrame();
+        this.assertFrame(DataFrameCodec.decode(DataFrameCodec.encode(dataFrame)), dataFrame);
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException, SchemaException {
+        DataFrame dataFrame = this.createFrame();
+        Path file = Files.createTempFile("frame", DataFrameCodec.FILE_EXTENSION);
+        try {
+            DataFrameCodec.write(dataFrame, file);
+            this.assertFrame(DataFrameCodec.read(file), dataFrame);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Frame spanning three bitmap words. Every seventh dengue value is missing, rainfall has values for the first
+     * 70 granules and a granule of its own that has no dengue value.
+     */
+    private DataFrame createFrame() throws SchemaException {
+        List<Object[]> dengue = new ArrayList<>();
+        List<Object[]> rainfall = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            dengue.add(new Object[]{"G" + i, i % 7 == 0 ? null : i * 1.5});
+            if (i < 70) {
+                rainfall.add(new Object[]{"G" + i, -i - 0.25});
+            }
+        }
+        rainfall.add(new Object[]{"G" + ROWS, 42.0});
+        DataFrame dataFrame = new DataFrame(DTG);
+        dataFrame.addAggregatedFeatureType(this.collection("dengue", dengue));
+        dataFrame.addAggregatedFeatureType(this.collection("rainfall", rainfall));
+        return dataFrame;
+    }
+
+    private void assertFrame(MappedDataFrame frame, DataFrame dataFrame) {
+        Assert.assertEquals(frame.getDtg(), DTG);
+        Assert.assertEquals(frame.getRecordDtg(), RECORD_DTG);
+        Assert.assertEquals(frame.getSpatialGranularity(), "moh");
+        Assert.assertEquals(frame.getTemporalGranularity(), "week");
+        Assert.assertEquals(frame.getColumnNames(), new String[]{"dengue_value", "rainfall_value"});
+        Assert.assertEquals(frame.getRowCount(), ROWS + 1);
+        Assert.assertEquals(frame.getGranules(), dataFrame.getFinalSpatialGranules().toArray(new String[0]));
+        Assert.assertEquals(frame.getRow("G" + (ROWS + 1)), -1);
+
+        for (int i = 0; i <= ROWS; i++) {
+            int row = frame.getRow("G" + i);
+            Assert.assertEquals(frame.getGranule(row), "G" + i);
+            Double dengue = i == ROWS || i % 7 == 0 ? null : i * 1.5;
+            Double rainfall = null;
+            if (i == ROWS) {
+                rainfall = 42.0;
+            } else if (i < 70) {
+                rainfall = -i - 0.25;
+            }
+            Assert.assertEquals(frame.getValueOrNull(row, 0), dengue, "dengue of G" + i);
+            Assert.assertEquals(frame.getValueOrNull(row, 1), rainfall, "rainfall of G" + i);
+            Assert.assertEquals(frame.isMissing(row, 0), dengue == null);
+            if (rainfall == null) {
+                Assert.assertTrue(Double.isNaN(frame.getValue(row, 1)));
+            }
+        }
+    }
+
+    private SpatioTemporallyAggregatedCollection collection(String featureTypeName, List<Object[]> values)
+            throws SchemaException {
+        SimpleFeatureType featureType = DataUtilities.createType(featureTypeName, "value:Double");
+        List<SimpleFeature> features = new ArrayList<>();
+        for (Object[] value : values) {
+            //aggregated features are identified by their spatial granule
+            features.add(SimpleFeatureBuilder.build(featureType, new Object[]{value[1]}, (String) value[0]));
+        }
+        return new SpatioTemporallyAggregatedCollection(featureType, DataUtilities.collection(features), "moh",
+                "week", RECORD_DTG, new ArrayList<>(Collections.singletonList("value")),
+                new ArrayList<>(Collections.singletonList("value")));
+    }
+}
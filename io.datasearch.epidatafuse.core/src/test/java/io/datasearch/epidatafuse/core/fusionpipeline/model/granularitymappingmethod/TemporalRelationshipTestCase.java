@@ -0,0 +1,30 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.model.granularitymappingmethod;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TemporalRelationshipTestCase {
+    private static final long HOUR = 1000 * 60 * 60L;
+
+    @Test
+    public void testGranularityDurations() {
+        Assert.assertEquals(TemporalRelationship.getGranularityDuration("minute"), 1000 * 60L);
+        Assert.assertEquals(TemporalRelationship.getGranularityDuration("hour"), HOUR);
+        Assert.assertEquals(TemporalRelationship.getGranularityDuration("day"), 24 * HOUR);
+        Assert.assertEquals(TemporalRelationship.getGranularityDuration("week"), 7 * 24 * HOUR);
+    }
+
+    @Test
+    public void testDurationsMatchTemporalAggregationWindows() {
+        //streamed pre aggregation windows and temporal aggregation windows cover the same period
+        for (String granularity : new String[]{"hour", "day", "week", "month", "year"}) {
+            Assert.assertEquals(TemporalRelationship.getGranularityDuration(granularity),
+                    TemporalRelationship.getRelationShip(granularity, 1, "hour", 1) * HOUR);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownGranularity() {
+        TemporalRelationship.getGranularityDuration("fortnight");
+    }
+}
@@ -0,0 +1,133 @@
+package io.datasearch.epidatafuse.core.fusionpipeline.stream;
+
+import io.siddhi.core.event.Event;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class IngestionQueueTestCase {
+    //longer than the replay retry delay of the queue
+    private static final long TIMEOUT = 15000;
+
+    @Test
+    public void testSpillAndReplay() throws Exception {
+        Path directory = Files.createTempDirectory("ingestion-queue");
+        List<Event> written = Collections.synchronizedList(new ArrayList<>());
+        IngestionQueue queue = this.createQueue(directory, events -> Collections.addAll(written, events));
+        try {
+            //the queue is not drained yet, events that do not fit are spilled
+            queue.offer(this.createEvents(0, 3));
+            Assert.assertEquals(queue.getStatistics().get("spilled"), 2L);
+            Assert.assertTrue(Files.exists(directory.resolve("feature.spill")));
+
+            queue.start();
+            this.await(written, 3);
+            this.assertEvents(written, 3);
+            Map<String, Object> statistics = queue.getStatistics();
+            Assert.assertEquals(statistics.get("replayed"), 2L);
+            Assert.assertEquals(statistics.get("dropped"), 0L);
+        } finally {
+            queue.shutdown();
+        }
+        Assert.assertFalse(Files.exists(directory.resolve("feature.spill")));
+        Assert.assertFalse(Files.exists(directory.resolve("feature.spill.replay")));
+        this.delete(directory);
+    }
+
+    @Test
+    public void testFailingConsumer() throws Exception {
+        Path directory = Files.createTempDirectory("ingestion-queue");
+        List<Event> written = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger(2);
+        IngestionQueue queue = this.createQueue(directory, events -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("datastore unavailable");
+            }
+            Collections.addAll(written, events);
+        });
+        try {
+            queue.offer(this.createEvents(0, 3));
+            //the queued event fails and is spilled, the replay fails and the events are spilled again
+            queue.start();
+            this.await(written, 3);
+            this.assertEvents(written, 3);
+            Map<String, Object> statistics = queue.getStatistics();
+            Assert.assertEquals(statistics.get("failedWrites"), 2L);
+            Assert.assertEquals(statistics.get("dropped"), 0L);
+        } finally {
+            queue.shutdown();
+        }
+        this.delete(directory);
+    }
+
+    @Test
+    public void testFailedWriteIsSpilled() throws Exception {
+        Path directory = Files.createTempDirectory("ingestion-queue");
+        List<Event> written = Collections.synchronizedList(new ArrayList<>());
+        IngestionQueue queue = this.createQueue(directory, events -> Collections.addAll(written, events));
+        try {
+            queue.start();
+            //a micro batch the consumer buffered earlier could not be written
+            Assert.assertTrue(queue.takeFailedWrite(this.createEvents(0, 2)));
+            this.await(written, 2);
+            this.assertEvents(written, 2);
+            Assert.assertEquals(queue.getStatistics().get("replayed"), 2L);
+        } finally {
+            queue.shutdown();
+        }
+
+        IngestionQueue blockingQueue = new IngestionQueue("feature", 1, 1, IngestionQueue.OverflowPolicy.BLOCK,
+                directory.resolve("blocking.spill"), events -> { });
+        Assert.assertFalse(blockingQueue.takeFailedWrite(this.createEvents(0, 2)));
+        this.delete(directory);
+    }
+
+    private IngestionQueue createQueue(Path directory, Consumer<Event[]> consumer) {
+        return new IngestionQueue("feature", 1, 1, IngestionQueue.OverflowPolicy.SPILL,
+                directory.resolve("feature.spill"), consumer);
+    }
+
+    private Event[] createEvents(int first, int count) {
+        Event[] events = new Event[count];
+        for (int i = 0; i < count; i++) {
+            events[i] = new Event(1000L + first + i, new Object[]{"G" + (first + i), (first + i) * 0.5});
+        }
+        return events;
+    }
+
+    //every event is written once with its timestamp and data
+    private void assertEvents(List<Event> written, int count) {
+        List<Event> events = new ArrayList<>(written);
+        Assert.assertEquals(events.size(), count);
+        events.sort(Comparator.comparingLong(Event::getTimestamp));
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(events.get(i).getTimestamp(), 1000L + i);
+            Assert.assertEquals(events.get(i).getData()[0], "G" + i);
+            Assert.assertEquals(((Number) events.get(i).getData()[1]).doubleValue(), i * 0.5, 1e-9);
+        }
+    }
+
+    private void await(List<Event> written, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (written.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}